@@ -0,0 +1,58 @@
+package minesweeper.bench;
+
+import java.util.concurrent.TimeUnit;
+import minesweeper.Settings;
+import minesweeper.core.Field;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Field construction for each preset and a big custom size. Each field gets
+ * its own seed.
+ */
+@State(Scope.Thread)
+@Fork(2)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+public class ConstructionBenchmark {
+
+    /**
+     * Preset name or size of the field.
+     */
+    @Param({"beginner", "intermediate", "expert", "1000x1000x150000"})
+    public String size;
+
+    /**
+     * Settings of the field.
+     */
+    private Settings settings;
+
+    /**
+     * Seed of the next field.
+     */
+    private long seed;
+
+    /**
+     * Reads settings of the size.
+     */
+    @Setup
+    public void setup() {
+        settings = Fields.settings(size);
+    }
+
+    /**
+     * Creates field.
+     *
+     * @return field
+     */
+    @Benchmark
+    public Field construct() {
+        return Fields.create(settings, seed++);
+    }
+}
@@ -0,0 +1,64 @@
+package minesweeper.bench;
+
+import minesweeper.Settings;
+import minesweeper.core.Field;
+
+/**
+ * Fields of the benchmarks.
+ */
+final class Fields {
+
+    /**
+     * Private constructor of the utility class.
+     */
+    private Fields() {
+    }
+
+    /**
+     * Returns settings of a benchmark parameter, either a preset name or
+     * rows, columns and mines separated by x, e.g. 1000x1000x150000.
+     *
+     * @param size preset name or size
+     * @return settings
+     */
+    static Settings settings(String size) {
+        switch (size) {
+            case "beginner":
+                return Settings.BEGINNER;
+            case "intermediate":
+                return Settings.INTERMEDIATE;
+            case "expert":
+                return Settings.EXPERT;
+            default:
+                final String[] parts = size.split("x");
+                if (parts.length != 3) {
+                    throw new IllegalArgumentException("Wrong benchmark size " + size + "!");
+                }
+                return new Settings(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+        }
+    }
+
+    /**
+     * Returns new field.
+     *
+     * @param settings settings of the field
+     * @param seed seed of the mine layout
+     * @return field
+     */
+    static Field create(Settings settings, long seed) {
+        return new Field(settings.getRowCount(), settings.getColumnCount(), settings.getMineCount(), seed);
+    }
+
+    /**
+     * Returns field with the first click in the centre done.
+     *
+     * @param settings settings of the field
+     * @param seed seed of the mine layout
+     * @return field
+     */
+    static Field started(Settings settings, long seed) {
+        final Field field = create(settings, seed);
+        field.openTile(settings.getRowCount() / 2, settings.getColumnCount() / 2);
+        return field;
+    }
+}
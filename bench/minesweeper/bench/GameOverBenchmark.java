@@ -0,0 +1,89 @@
+package minesweeper.bench;
+
+import java.util.concurrent.TimeUnit;
+import minesweeper.Settings;
+import minesweeper.core.ChangeSet;
+import minesweeper.core.Field;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Opening a mine, which fails the game and reveals all mines. A started field
+ * is prepared before each invocation, outside of the measurement.
+ */
+@State(Scope.Thread)
+@Fork(2)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+public class GameOverBenchmark {
+
+    /**
+     * Preset name or size of the field.
+     */
+    @Param({"expert", "300x300x18000"})
+    public String size;
+
+    /**
+     * Settings of the field.
+     */
+    private Settings settings;
+
+    /**
+     * Seed of the next field.
+     */
+    private long seed;
+
+    /**
+     * Started field.
+     */
+    private Field field;
+
+    /**
+     * Row of a mine of the field.
+     */
+    private int row;
+
+    /**
+     * Column of a mine of the field.
+     */
+    private int column;
+
+    /**
+     * Reads settings of the size.
+     */
+    @Setup
+    public void setup() {
+        settings = Fields.settings(size);
+    }
+
+    /**
+     * Starts a new field and finds its first mine.
+     */
+    @Setup(Level.Invocation)
+    public void start() {
+        field = Fields.started(settings, seed++);
+        int index = 0;
+        while (!field.isMine(index / settings.getColumnCount(), index % settings.getColumnCount())) {
+            index++;
+        }
+        row = index / settings.getColumnCount();
+        column = index % settings.getColumnCount();
+    }
+
+    /**
+     * Opens the mine.
+     *
+     * @return changes of the move
+     */
+    @Benchmark
+    public ChangeSet openMine() {
+        return field.openTile(row, column);
+    }
+}
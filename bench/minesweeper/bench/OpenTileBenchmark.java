@@ -0,0 +1,58 @@
+package minesweeper.bench;
+
+import java.util.concurrent.TimeUnit;
+import minesweeper.Settings;
+import minesweeper.core.Field;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * First click in the centre of a new field, which places the mines and opens
+ * the cascade of the click. The sparse 1000x1000 field opens a big cascade.
+ */
+@State(Scope.Thread)
+@Fork(2)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+public class OpenTileBenchmark {
+
+    /**
+     * Preset name or size of the field.
+     */
+    @Param({"expert", "1000x1000x150000", "1000x1000x10000"})
+    public String size;
+
+    /**
+     * Settings of the field.
+     */
+    private Settings settings;
+
+    /**
+     * Seed of the next field.
+     */
+    private long seed;
+
+    /**
+     * Reads settings of the size.
+     */
+    @Setup
+    public void setup() {
+        settings = Fields.settings(size);
+    }
+
+    /**
+     * Creates field and opens its centre.
+     *
+     * @return started field
+     */
+    @Benchmark
+    public Field firstClick() {
+        return Fields.started(settings, seed++);
+    }
+}
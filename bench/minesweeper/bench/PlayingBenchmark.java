@@ -0,0 +1,89 @@
+package minesweeper.bench;
+
+import java.util.concurrent.TimeUnit;
+import minesweeper.Settings;
+import minesweeper.core.ChangeSet;
+import minesweeper.core.Field;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Moves and queries on a started expert field. Tiles are visited in turn.
+ */
+@State(Scope.Thread)
+@Fork(2)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+public class PlayingBenchmark {
+
+    /**
+     * Seed of the benchmarked field.
+     */
+    private static final long SEED = 1;
+
+    /**
+     * Benchmarked field.
+     */
+    private Field field;
+
+    /**
+     * Flat index of the next tile.
+     */
+    private int index;
+
+    /**
+     * Starts the field.
+     */
+    @Setup
+    public void setup() {
+        field = Fields.started(Settings.EXPERT, SEED);
+    }
+
+    /**
+     * Advances to the next tile.
+     *
+     * @return flat index of the tile
+     */
+    private int next() {
+        index = index + 1 < field.getRowCount() * field.getColumnCount() ? index + 1 : 0;
+        return index;
+    }
+
+    /**
+     * Marks the next tile, each tile goes through marked, question and
+     * closed state.
+     *
+     * @return changes of the move
+     */
+    @Benchmark
+    public ChangeSet markTile() {
+        final int tile = next();
+        return field.markTile(tile / field.getColumnCount(), tile % field.getColumnCount());
+    }
+
+    /**
+     * Returns remaining mine count.
+     *
+     * @return remaining mine count
+     */
+    @Benchmark
+    public int getRemainingMineCount() {
+        return field.getRemainingMineCount();
+    }
+
+    /**
+     * Counts mines next to the next tile.
+     *
+     * @return adjacent mine count
+     */
+    @Benchmark
+    public int countAdjacentMines() {
+        final int tile = next();
+        return field.countAdjacentMines(tile / field.getColumnCount(), tile % field.getColumnCount());
+    }
+}
@@ -1,7 +1,19 @@
 package minesweeper;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
 import minesweeper.consoleui.ConsoleUI;
 import minesweeper.core.Field;
+import minesweeper.core.GameState;
+import minesweeper.core.Move;
+import minesweeper.core.MoveJournal;
+import minesweeper.core.MoveListener;
+import minesweeper.core.Replay;
+import minesweeper.core.ReplayPlayer;
+import minesweeper.core.SaveGame;
+import minesweeper.solver.NoGuessGenerator;
 import minesweeper.swingui.SwingUI;
 
 /**
@@ -37,6 +49,42 @@ public class Minesweeper {
      * Custom user interface
      */
     private static String CUSTOM_UI = null;
+    /**
+     * Name of saved game file
+     */
+    private static final String SAVE_FILE = System.getProperty("user.home") + System.getProperty("file.separator") + "minesweeper.save";
+    /**
+     * Name of move journal file
+     */
+    private static final String JOURNAL_FILE = System.getProperty("user.home") + System.getProperty("file.separator") + "minesweeper.journal";
+    /**
+     * Name of file with replay of the last game
+     */
+    private static final String REPLAY_FILE = System.getProperty("user.home") + System.getProperty("file.separator") + "minesweeper.replay";
+    /**
+     * Journal of moves of the current game
+     */
+    private MoveJournal journal;
+    /**
+     * Recording of the current game
+     */
+    private Replay recording;
+    /**
+     * Replay file to play instead of a game
+     */
+    private static String REPLAY = null;
+    /**
+     * Speed of replay playback
+     */
+    private static double REPLAY_SPEED = 1;
+    /**
+     * Time limit of generating a game without guessing in milliseconds
+     */
+    private static final long NO_GUESS_TIMEOUT_MILLIS = 3000;
+    /**
+     * True if new games can be solved without guessing
+     */
+    private volatile boolean noGuess;
 
     /**
      * Constructor.
@@ -50,28 +98,179 @@ public class Minesweeper {
         } else {
             userInterface = create(CUSTOM_UI);
         }
-        newGame();
+        if (REPLAY == null) {
+            newGame();
+        } else {
+            playReplay(REPLAY, REPLAY_SPEED);
+        }
     }
 
     /**
-     * Starts new game and starts timer.
+     * Starts new game and starts timer. Game left by a crash or saved on exit
+     * is resumed once, then its files are deleted. Moves of the game are
+     * written to the journal.
      */
 
     public void newGame() {
-        Field field = new Field(setting.getRowCount(), setting.getColumnCount(), setting.getMineCount());
-        /*Field field;
-        startMillis = System.currentTimeMillis();
-        try (ObjectInputStream oos = new ObjectInputStream(new FileInputStream(System.getProperty("user.home") + System.getProperty("file.separator") + "save.settings"))) {
-            field = (Field) oos.readObject();
-        } catch (Exception e) {
-            System.out.println("Cant open the file!");
-            field = new Field(setting.getRowCount(), setting.getColumnCount(), setting.getMineCount());
-        }*/
-        startMillis = System.currentTimeMillis();
+        newGame(null);
+    }
+
+    /**
+     * Starts new game on a field created in advance by {@link #createField()},
+     * e.g. on a worker thread. Game left by a crash or saved on exit is still
+     * resumed first.
+     *
+     * @param created new field or null to create it now
+     */
+    public void newGame(Field created) {
+        if (journal != null) {
+            journal.delete();
+            journal = null;
+        }
+        SaveGame game = null;
+        final File journalFile = new File(JOURNAL_FILE);
+        final File saveFile = new File(SAVE_FILE);
+        if (journalFile.exists()) {
+            try {
+                game = MoveJournal.recover(JOURNAL_FILE);
+            } catch (IOException e) {
+                System.out.println("Cant recover the game!");
+            }
+        }
+        if (game == null && saveFile.exists()) {
+            try {
+                game = SaveGame.read(SAVE_FILE);
+            } catch (IOException e) {
+                System.out.println("Cant open the saved game!");
+            }
+        }
+        deleteFile(journalFile);
+        deleteFile(saveFile);
+
+        final Field field;
+        if (game != null && game.getField().getState() == GameState.PLAYING) {
+            field = game.getField();
+            startMillis = System.currentTimeMillis() - game.getElapsedMillis();
+        } else {
+            field = created != null ? created : createField();
+            startMillis = System.currentTimeMillis();
+        }
+        try {
+            journal = new MoveJournal(JOURNAL_FILE, field, System.currentTimeMillis() - startMillis);
+        } catch (IOException e) {
+            System.out.println("Cant create the journal!");
+        }
+        recording = new Replay(field);
+        field.setMoveListener(new MoveListener() {
+            @Override
+            public void movePlayed(Field field, Move move, int row, int column) {
+                if (journal != null) {
+                    journal.movePlayed(field, move, row, column);
+                }
+                recording.movePlayed(field, move, row, column);
+                if (field.getState() != GameState.PLAYING) {
+                    saveReplay();
+                }
+            }
+        });
         userInterface.newGameStarted(field);
 
     }
 
+    /**
+     * Creates field of a new game with current settings. In no guessing mode
+     * the field is generated for the tile in the middle, which is opened, so
+     * this may take up to {@link #NO_GUESS_TIMEOUT_MILLIS}. When no candidate
+     * passes in time, the one closest to a solution is used and the player is
+     * told that it may need a guess.
+     *
+     * @return new field
+     */
+    public Field createField() {
+        final int rowCount = setting.getRowCount();
+        final int columnCount = setting.getColumnCount();
+        if (!noGuess) {
+            return new Field(rowCount, columnCount, setting.getMineCount());
+        }
+        final NoGuessGenerator generator = new NoGuessGenerator(rowCount, columnCount, setting.getMineCount());
+        final Field field = generator.generate(rowCount / 2, columnCount / 2, new Random().nextLong(), NO_GUESS_TIMEOUT_MILLIS);
+        if (!generator.isGuaranteed()) {
+            System.out.println("Cant generate a game without guessing in time, the game may need a guess!");
+        }
+        field.openTile(rowCount / 2, columnCount / 2);
+        return field;
+    }
+
+    /**
+     * Deletes a file read at the start of a game, so that the game is not
+     * loaded again. A big save file may still be mapped, see
+     * {@link SaveGame#read(String)}, so a failed delete is retried once after
+     * garbage collection.
+     *
+     * @param file file to delete
+     */
+    private static void deleteFile(File file) {
+        try {
+            Files.deleteIfExists(file.toPath());
+        } catch (IOException e) {
+            System.gc();
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException again) {
+                System.out.println("Cant delete " + file + "!");
+            }
+        }
+    }
+
+    /**
+     * Saves replay of the current game.
+     */
+    private void saveReplay() {
+        try {
+            recording.write(REPLAY_FILE);
+        } catch (IOException e) {
+            System.out.println("Cant save the replay!");
+        }
+    }
+
+    /**
+     * Plays recorded game in the user interface.
+     *
+     * @param fileName replay file name
+     * @param speed playback speed, 1 is real time, 0 steps on user request
+     */
+    public void playReplay(String fileName, double speed) {
+        try {
+            ReplayPlayer player = new ReplayPlayer(Replay.read(fileName));
+            startMillis = System.currentTimeMillis();
+            userInterface.replayStarted(player, speed);
+        } catch (IOException e) {
+            System.out.println("Cant open the replay!");
+        }
+    }
+
+    /**
+     * Saves unfinished game, so that it is resumed by the next start. Replays
+     * are not saved.
+     *
+     * @param field field of the game
+     */
+    public void saveGame(Field field) {
+        if (recording == null || field == null || field.getState() != GameState.PLAYING) {
+            return;
+        }
+        saveReplay();
+        try {
+            new SaveGame(field, System.currentTimeMillis() - startMillis).write(SAVE_FILE);
+            if (journal != null) {
+                journal.delete();
+                journal = null;
+            }
+        } catch (IOException e) {
+            System.out.println("Cant save the game!");
+        }
+    }
+
     /**
      * Main method.
      *
@@ -81,6 +280,12 @@ public class Minesweeper {
         if (args.length != 0) {
             CUSTOM_UI = args[0];
         }
+        if (args.length > 1) {
+            REPLAY = args[1];
+        }
+        if (args.length > 2) {
+            REPLAY_SPEED = Double.parseDouble(args[2]);
+        }
         new Minesweeper();
     }
 
@@ -134,6 +339,25 @@ public class Minesweeper {
         this.setting.save();
     }
 
+    /**
+     * Returns true if new games can be solved without guessing.
+     *
+     * @return true in no guessing mode
+     */
+    public boolean isNoGuess() {
+        return noGuess;
+    }
+
+    /**
+     * Sets whether new games can be solved without guessing. Such games are
+     * generated with the tile in the middle opened.
+     *
+     * @param noGuess true for no guessing mode
+     */
+    public void setNoGuess(boolean noGuess) {
+        this.noGuess = noGuess;
+    }
+
     /**
      * Create new instance of UI based on parameter. This method throws runtime
      * exception if no parameter or empty parameter was set.
@@ -1,6 +1,7 @@
 package minesweeper;
 
 import java.io.*;
+import minesweeper.core.Field;
 
 /**
  * The class maintain main settings of the game.
@@ -111,6 +112,17 @@ public class Settings implements Serializable {
         return mineCount;
     }
 
+    /**
+     * Creates field with these settings. Fields created with the same seed
+     * have the same mine layout.
+     *
+     * @param seed seed of the mine layout
+     * @return new field
+     */
+    public Field createField(long seed) {
+        return new Field(rowCount, columnCount, mineCount, seed);
+    }
+
     /**
      * Detects if the objects are same.
      *
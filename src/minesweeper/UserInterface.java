@@ -1,6 +1,7 @@
 package minesweeper;
 
 import minesweeper.core.Field;
+import minesweeper.core.ReplayPlayer;
 
 /**
  * Implementing an interface allows a class to starts new game and update
@@ -20,4 +21,13 @@ public interface UserInterface {
      */
     void update();
 
+    /**
+     * Starts playback of a recorded game.
+     *
+     * @param player replay player
+     * @param speed playback speed, 1 is real time, higher values fast
+     * forward, 0 plays a move on user request
+     */
+    void replayStarted(ReplayPlayer player, double speed);
+
 }
@@ -9,10 +9,9 @@ import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import minesweeper.Minesweeper;
-import minesweeper.core.Clue;
 import minesweeper.core.Field;
 import minesweeper.core.GameState;
-import minesweeper.core.Mine;
+import minesweeper.core.ReplayPlayer;
 import minesweeper.core.Tile;
 
 /**
@@ -77,6 +76,45 @@ public class ConsoleUI implements UserInterface {
         } while (true);
     }
 
+    /**
+     * Prints recorded game move by move. When speed is 0, empty line plays
+     * the next move, J(number) jumps to a move and X ends the replay.
+     *
+     * @param player replay player
+     * @param speed playback speed
+     */
+    @Override
+    public void replayStarted(ReplayPlayer player, double speed) {
+        Pattern patternJump = Pattern.compile("J([0-9]{1,9})");
+        this.field = player.getField();
+        update();
+        while (player.getPosition() < player.getMoveCount()) {
+            if (speed > 0) {
+                try {
+                    Thread.sleep((long) (player.getDelayMillis() / speed));
+                } catch (InterruptedException e) {
+                    return;
+                }
+                player.step();
+            } else {
+                System.out.println("Move " + player.getPosition() + "/" + player.getMoveCount()
+                        + " - next move: Enter, jump: J(number), quit: X");
+                String userinput = readLine();
+                if (userinput == null || userinput.equalsIgnoreCase("X")) {
+                    return;
+                }
+                Matcher matcherJump = patternJump.matcher(userinput.toUpperCase());
+                if (matcherJump.matches()) {
+                    field = player.seek(Integer.parseInt(matcherJump.group(1)));
+                } else {
+                    player.step();
+                }
+            }
+            update();
+        }
+        System.out.println("Replay ended");
+    }
+
     /**
      * Updates user interface - prints the field.
      */
@@ -97,24 +135,22 @@ public class ConsoleUI implements UserInterface {
             System.out.print((char) (65 + row) + " ");
 
             for (int column = 0; column < field.getColumnCount(); column++) {
-                Tile tile = field.getTile(row, column);
+                Tile.State state = field.stateAt(row, column);
 
-                if (tile.getState() == Tile.State.MARKED) {
+                if (state == Tile.State.MARKED) {
                     System.out.print("M ");
                 }
 
-                if (tile.getState() == Tile.State.CLOSED) {
+                if (state == Tile.State.CLOSED) {
                     System.out.print("- ");
                 }
 
-                if (tile.getState() == Tile.State.OPEN) {
+                if (state == Tile.State.OPEN) {
 
-                    if (tile instanceof Mine) {
+                    if (field.isMine(row, column)) {
                         System.out.print("X ");
-                    }
-
-                    if (tile instanceof Clue) {
-                        System.out.print(field.countAdjacentMines(row, column) + " ");
+                    } else {
+                        System.out.print(field.clueAt(row, column) + " ");
                     }
                 }
 
@@ -133,12 +169,16 @@ public class ConsoleUI implements UserInterface {
 
         Pattern patternOpen = Pattern.compile("O([A-I])([0-8])");
         Pattern patternMarked = Pattern.compile("M([A-I])([0-8])");
+        Pattern patternChord = Pattern.compile("C([A-I])([0-8])");
+        Pattern patternNoGuess = Pattern.compile("N");
         Pattern patternExit = Pattern.compile("X");
 
         String userinput = readLine();
 
         Matcher matcherOpen = patternOpen.matcher(userinput.toUpperCase());
         Matcher matcherMarked = patternMarked.matcher(userinput.toUpperCase());
+        Matcher matcherChord = patternChord.matcher(userinput.toUpperCase());
+        Matcher matcherNoGuess = patternNoGuess.matcher(userinput.toUpperCase());
         Matcher matcherExit = patternExit.matcher(userinput.toUpperCase());
 
         boolean action = matcherOpen.matches();
@@ -156,6 +196,16 @@ public class ConsoleUI implements UserInterface {
 
                 field.markTile(row, column);
                 this.newGameStarted(field);
+            } else if (matcherChord.matches()) {
+                int row = matcherChord.group(1).charAt(0) - 65;
+                int column = Integer.parseInt(matcherChord.group(2));
+
+                field.chord(row, column);
+                this.newGameStarted(field);
+            } else if (matcherNoGuess.matches()) {
+                Minesweeper.getInstance().setNoGuess(!Minesweeper.getInstance().isNoGuess());
+                System.out.println("No guessing mode " + (Minesweeper.getInstance().isNoGuess() ? "on" : "off"));
+                Minesweeper.getInstance().newGame();
             } else {
                 boolean exit = matcherExit.matches();
                 if (exit == true) {
@@ -165,6 +215,8 @@ public class ConsoleUI implements UserInterface {
                     throw new WrongFormatException("\nBad request. Plaese try in these formats: \n"
                             + "mark tile: M(A-I)(0-8) \n"
                             + "open tile: O(A-I)(0-8) \n"
+                            + "open around clue: C(A-I)(0-8) \n"
+                            + "new game in no guessing mode on/off: N\n"
                             + "quit game: X\n");
                 }
             }
@@ -0,0 +1,1109 @@
+package minesweeper.core;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Board keeping all tiles in primitive arrays. Mines are kept in a bitset,
+ * clue values and tile states in byte arrays.
+ * <p>
+ * Tile states are split into pages which are shared with snapshots and copied
+ * when first written, so untouched pages of a new board take no memory.
+ */
+final class ArrayBoard extends Board {
+
+    /**
+     * Boards with at least this many tiles are generated in parallel.
+     */
+    static final int PARALLEL_THRESHOLD = 1 << 20;
+
+    /**
+     * Number of tiles in a mine block of parallel generation. Multiple of 64,
+     * so that blocks do not share bitset words.
+     */
+    private static final int BLOCK_SIZE = 1 << 16;
+
+    /**
+     * Number of rows in a clue stripe of parallel generation.
+     */
+    private static final int STRIPE_ROWS = 64;
+
+    /**
+     * Binary logarithm of number of tiles in a state page.
+     */
+    private static final int PAGE_SHIFT = 12;
+
+    /**
+     * Mask of tile position inside state page.
+     */
+    private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+    /**
+     * Page of closed tiles shared by all boards, never written.
+     */
+    private static final byte[] CLOSED_PAGE = new byte[1 << PAGE_SHIFT];
+
+    /**
+     * Source of write epochs, each board and snapshot gets a new one.
+     */
+    private static final AtomicLong EPOCHS = new AtomicLong();
+
+    /**
+     * Pool for parallel generation, created when first needed.
+     */
+    private static ForkJoinPool pool;
+
+    /**
+     * Mine bitset, one bit per tile.
+     */
+    private final long[] mines;
+
+    /**
+     * Clue values, one byte per tile.
+     */
+    private final byte[] clues;
+
+    /**
+     * Tile state codes in pages, one byte per tile.
+     */
+    private final byte[][] statePages;
+
+    /**
+     * Epoch of the board which owns each state page. Pages of other epochs
+     * are shared and must be copied before write, epochs start at 1, so
+     * closed pages are never owned.
+     */
+    private final long[] pageEpochs;
+
+    /**
+     * Epoch of pages owned by this board.
+     */
+    private long epoch = EPOCHS.incrementAndGet();
+
+    /**
+     * True once mines and clues are placed, even if there are no mines.
+     */
+    private boolean generated;
+
+    /**
+     * Flat indices of all mines.
+     */
+    private int[] minePositions = new int[0];
+
+    /**
+     * Opening number plus one of every tile without adjacent mines, zero for
+     * other tiles. Null until mines are placed.
+     */
+    private int[] openings;
+
+    /**
+     * Start of the tiles of each opening in {@link #openingTiles}, the last
+     * entry is the end of the last opening.
+     */
+    private int[] openingStarts;
+
+    /**
+     * Flat indices of the tiles of all openings, opening after opening.
+     */
+    private int[] openingTiles;
+
+    /**
+     * Number of clues which do not border any opening.
+     */
+    private int isolatedClueCount;
+
+    /**
+     * Constructor of an empty board.
+     *
+     * @param rowCount row count
+     * @param columnCount column count
+     */
+    ArrayBoard(int rowCount, int columnCount) {
+        super(rowCount, columnCount);
+        int size = size();
+        mines = new long[(size + 63) >>> 6];
+        clues = new byte[size];
+        statePages = closedPages(size);
+        pageEpochs = new long[statePages.length];
+    }
+
+    /**
+     * Constructor of a board with given mine bitset. Clues are computed.
+     *
+     * @param rowCount row count
+     * @param columnCount column count
+     * @param mines mine bitset, bits beyond the board must be clear
+     */
+    ArrayBoard(int rowCount, int columnCount, long[] mines) {
+        super(rowCount, columnCount);
+        int size = size();
+        this.mines = mines;
+        clues = new byte[size];
+        statePages = closedPages(size);
+        pageEpochs = new long[statePages.length];
+        minePositions = new int[countMines()];
+        int i = 0;
+        for (int index = nextMine(0); index >= 0; index = nextMine(index + 1)) {
+            minePositions[i++] = index;
+        }
+        fillWithClues(0, getRowCount());
+        labelOpenings();
+    }
+
+    /**
+     * Constructor of a snapshot. Mines and clues are shared, state pages are
+     * shared until written. A board not generated yet gets its own mines and
+     * clues, so that mines placed later on one board do not show on the other.
+     *
+     * @param source board to copy
+     */
+    private ArrayBoard(ArrayBoard source) {
+        super(source.getRowCount(), source.getColumnCount());
+        final boolean empty = !source.generated;
+        mines = empty ? new long[source.mines.length] : source.mines;
+        clues = empty ? new byte[source.clues.length] : source.clues;
+        minePositions = source.minePositions;
+        generated = source.generated;
+        openings = empty ? null : source.openings;
+        openingStarts = empty ? null : source.openingStarts;
+        openingTiles = empty ? null : source.openingTiles;
+        isolatedClueCount = source.isolatedClueCount;
+        statePages = source.statePages.clone();
+        pageEpochs = new long[statePages.length];
+    }
+
+    /**
+     * Returns state pages of a new board, all referring to the closed page.
+     *
+     * @param size number of tiles
+     * @return state pages
+     */
+    private static byte[][] closedPages(int size) {
+        final byte[][] pages = new byte[(int) (((long) size + PAGE_MASK) >>> PAGE_SHIFT)][];
+        Arrays.fill(pages, CLOSED_PAGE);
+        return pages;
+    }
+
+    /**
+     * Generates random mines and clues. Boards of at least
+     * {@link #PARALLEL_THRESHOLD} tiles are generated in parallel on the
+     * shared fork/join pool.
+     *
+     * @param mineCount mine count
+     * @param seed seed of the mine layout
+     */
+    void generate(int mineCount, long seed) {
+        if (size() >= PARALLEL_THRESHOLD) {
+            generate(mineCount, seed, sharedPool());
+        } else {
+            generateMines(mineCount, seed);
+            fillWithClues(0, getRowCount());
+            labelOpenings();
+        }
+    }
+
+    /**
+     * Generates random mines and clues, no mine is placed on a tile and its
+     * neighbours. Only the tile itself is kept free if there are too many
+     * mines for the neighbours.
+     *
+     * @param mineCount mine count
+     * @param seed seed of the mine layout
+     * @param safeIndex flat index of the tile
+     */
+    void generate(int mineCount, long seed, int safeIndex) {
+        generate(mineCount, seed, safeIndex, true);
+    }
+
+    /**
+     * Generates random mines and clues, no mine is placed on a tile and, if
+     * asked, its neighbours.
+     *
+     * @param mineCount mine count
+     * @param seed seed of the mine layout
+     * @param safeIndex flat index of the tile
+     * @param neighbours true to keep the neighbours free too
+     */
+    void generate(int mineCount, long seed, int safeIndex, boolean neighbours) {
+        final int[] excluded = neighbours ? safeArea(safeIndex, mineCount)
+                : mineCount < size() ? new int[]{safeIndex} : new int[0];
+        if (size() >= PARALLEL_THRESHOLD) {
+            generate(mineCount, seed, sharedPool(), excluded);
+        } else {
+            generateMines(mineCount, seed, excluded);
+            fillWithClues(0, getRowCount());
+            labelOpenings();
+        }
+    }
+
+    /**
+     * Generates random mines and clues in parallel. The board is split into
+     * blocks of {@link #BLOCK_SIZE} tiles, each block gets its share of mines
+     * proportional to its size and places them with its own seeded random
+     * generator, so the layout does not depend on the number of threads.
+     * Clues are then computed in stripes of {@link #STRIPE_ROWS} rows and
+     * openings are labelled.
+     *
+     * @param mineCount mine count
+     * @param seed seed of the mine layout
+     * @param pool pool to run on
+     */
+    void generate(int mineCount, long seed, ForkJoinPool pool) {
+        generate(mineCount, seed, pool, new int[0]);
+    }
+
+    /**
+     * Generates random mines and clues in parallel. Mines falling on excluded
+     * tiles are moved to random free tiles before clues are computed.
+     *
+     * @param mineCount mine count
+     * @param seed seed of the mine layout
+     * @param pool pool to run on
+     * @param excluded sorted flat indices of tiles without mines
+     */
+    private void generate(final int mineCount, final long seed, ForkJoinPool pool, int[] excluded) {
+        minePositions = new int[mineCount];
+        pool.invoke(new RangeTask(0, (size() + BLOCK_SIZE - 1) / BLOCK_SIZE, 1, new RangeAction() {
+            @Override
+            public void run(int from, int to) {
+                for (int block = from; block < to; block++) {
+                    generateBlock(block, mineCount, seed);
+                }
+            }
+        }));
+        relocateMines(seed, excluded);
+        pool.invoke(new RangeTask(0, getRowCount(), STRIPE_ROWS, new RangeAction() {
+            @Override
+            public void run(int from, int to) {
+                fillWithClues(from, to);
+            }
+        }));
+        labelOpenings();
+    }
+
+    /**
+     * Returns tiles to keep free of mines around a tile.
+     *
+     * @param safeIndex flat index of the tile
+     * @param mineCount mine count
+     * @return sorted flat indices, the tile and its neighbours if the other
+     * tiles can hold all mines
+     */
+    private int[] safeArea(int safeIndex, int mineCount) {
+        final int row = safeIndex / getColumnCount();
+        final int column = safeIndex % getColumnCount();
+        final int[] area = new int[9];
+        int count = 0;
+        for (int actRow = Math.max(row - 1, 0); actRow <= Math.min(row + 1, getRowCount() - 1); actRow++) {
+            for (int actColumn = Math.max(column - 1, 0); actColumn <= Math.min(column + 1, getColumnCount() - 1); actColumn++) {
+                area[count++] = index(actRow, actColumn);
+            }
+        }
+        if (mineCount <= size() - count) {
+            return Arrays.copyOf(area, count);
+        }
+        return mineCount < size() ? new int[]{safeIndex} : new int[0];
+    }
+
+    /**
+     * Moves mines from excluded tiles to random tiles which are neither mines
+     * nor excluded.
+     *
+     * @param seed seed of the mine layout
+     * @param excluded sorted flat indices of tiles without mines
+     */
+    private void relocateMines(long seed, int[] excluded) {
+        final Random random = new Random(mix(~seed));
+        for (int tile : excluded) {
+            if (!isMine(tile)) {
+                continue;
+            }
+            int index;
+            do {
+                index = random.nextInt(size());
+            } while (isMine(index) || Arrays.binarySearch(excluded, index) >= 0);
+            mines[tile >>> 6] &= ~(1L << tile);
+            mines[index >>> 6] |= 1L << index;
+            for (int i = 0; i < minePositions.length; i++) {
+                if (minePositions[i] == tile) {
+                    minePositions[i] = index;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates random mines of the whole board. Uses Floyd's sampling, so
+     * every layout is equally likely and exactly mineCount random numbers are
+     * drawn whatever the mine density is.
+     *
+     * @param mineCount mine count
+     * @param seed seed of the mine layout
+     */
+    private void generateMines(int mineCount, long seed) {
+        generateMines(mineCount, seed, new int[0]);
+    }
+
+    /**
+     * Generates random mines of the whole board except excluded tiles with
+     * Floyd's sampling. Samples are drawn from tiles which are not excluded
+     * and mapped to flat indices by skipping the excluded ones.
+     *
+     * @param mineCount mine count
+     * @param seed seed of the mine layout
+     * @param excluded sorted flat indices of tiles without mines
+     */
+    private void generateMines(int mineCount, long seed, int[] excluded) {
+        Random random = new Random(mix(seed));
+        final int size = size() - excluded.length;
+        minePositions = new int[mineCount];
+        int i = 0;
+        for (int candidate = size - mineCount; candidate < size; candidate++) {
+            int index = skipExcluded(random.nextInt(candidate + 1), excluded);
+            if (isMine(index)) {
+                index = skipExcluded(candidate, excluded);
+            }
+            mines[index >>> 6] |= 1L << index;
+            minePositions[i++] = index;
+        }
+    }
+
+    /**
+     * Maps position among tiles which are not excluded to flat index.
+     *
+     * @param position position
+     * @param excluded sorted flat indices of excluded tiles
+     * @return flat index
+     */
+    private static int skipExcluded(int position, int[] excluded) {
+        for (int tile : excluded) {
+            if (position >= tile) {
+                position++;
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Generates random mines of one block with Floyd's sampling. Blocks start
+     * on word boundaries, so blocks never share mine bitset words.
+     *
+     * @param block block number
+     * @param mineCount mine count of the whole board
+     * @param seed seed of the mine layout
+     */
+    private void generateBlock(int block, int mineCount, long seed) {
+        final int start = block * BLOCK_SIZE;
+        final int area = Math.min(BLOCK_SIZE, size() - start);
+        final int firstMine = (int) ((long) mineCount * start / size());
+        final int blockMineCount = (int) ((long) mineCount * (start + area) / size()) - firstMine;
+
+        final Random random = new Random(mix(seed + block * 0x9e3779b97f4a7c15L));
+        int i = firstMine;
+        for (int candidate = area - blockMineCount; candidate < area; candidate++) {
+            int index = start + random.nextInt(candidate + 1);
+            if (isMine(index)) {
+                index = start + candidate;
+            }
+            mines[index >>> 6] |= 1L << index;
+            minePositions[i++] = index;
+        }
+    }
+
+    /**
+     * Fill with clues - every tile in the rows gets number of adjecent mines.
+     * Each row is unpacked into words of 64 tiles and the counts are added
+     * bit-sliced: for every word the horizontal sums of the row above and
+     * below and the left and right neighbours in the row are added with
+     * word-wide full adders into four bit planes, which hold the clue values
+     * of all 64 tiles.
+     *
+     * @param firstRow first row
+     * @param lastRow row after the last row
+     */
+    private void fillWithClues(int firstRow, int lastRow) {
+        final int rowCount = getRowCount();
+        final int columnCount = getColumnCount();
+        final int wordCount = (columnCount + 63) >>> 6;
+        long[] above = new long[wordCount];
+        long[] current = new long[wordCount];
+        long[] below = new long[wordCount];
+        if (firstRow > 0) {
+            rowWords(firstRow - 1, above);
+        }
+        rowWords(firstRow, current);
+
+        for (int row = firstRow; row < lastRow; row++) {
+            if (row + 1 < rowCount) {
+                rowWords(row + 1, below);
+            } else {
+                Arrays.fill(below, 0);
+            }
+
+            for (int word = 0; word < wordCount; word++) {
+                // horizontal sum of three tiles above, two bits
+                long left = shiftLeft(above, word);
+                long right = shiftRight(above, word);
+                final long a0 = left ^ above[word] ^ right;
+                final long a1 = (left & above[word]) | (left & right) | (above[word] & right);
+
+                // horizontal sum of three tiles below, two bits
+                left = shiftLeft(below, word);
+                right = shiftRight(below, word);
+                final long b0 = left ^ below[word] ^ right;
+                final long b1 = (left & below[word]) | (left & right) | (below[word] & right);
+
+                // left and right neighbour in the row, two bits
+                left = shiftLeft(current, word);
+                right = shiftRight(current, word);
+                final long m0 = left ^ right;
+                final long m1 = left & right;
+
+                // above + below, three bits
+                final long c0 = a0 ^ b0;
+                long carry = a0 & b0;
+                final long c1 = a1 ^ b1 ^ carry;
+                final long c2 = (a1 & b1) | (carry & (a1 ^ b1));
+
+                // + row neighbours, four bits
+                final long e0 = c0 ^ m0;
+                carry = c0 & m0;
+                final long e1 = c1 ^ m1 ^ carry;
+                carry = (c1 & m1) | (carry & (c1 ^ m1));
+                final long e2 = c2 ^ carry;
+                final long e3 = c2 & carry;
+
+                final int firstColumn = word << 6;
+                final int end = Math.min(64, columnCount - firstColumn);
+                int index = index(row, firstColumn);
+                for (int bit = 0; bit < end; bit++) {
+                    clues[index++] = (byte) (((e0 >>> bit) & 1) | (((e1 >>> bit) & 1) << 1)
+                            | (((e2 >>> bit) & 1) << 2) | (((e3 >>> bit) & 1) << 3));
+                }
+            }
+
+            final long[] recycled = above;
+            above = current;
+            current = below;
+            below = recycled;
+        }
+    }
+
+    /**
+     * Labels openings - connected regions of tiles without adjacent mines
+     * together with their bordering clues. Zero tiles and bordering clues
+     * are found as bitsets, only their set bits are visited. The tiles of
+     * each opening are listed in one array, a clue bordering several
+     * openings is listed in each. Mines and clues are final afterwards, so
+     * the board is marked generated.
+     */
+    private void labelOpenings() {
+        final int wordCount = (getColumnCount() + 63) >>> 6;
+        final long[] zeros = zeroWords(wordCount);
+        final long[] borders = zeros.clone();
+        spread(borders, wordCount);
+        int zeroCount = 0;
+        int borderCount = 0;
+        for (int word = 0; word < zeros.length; word++) {
+            borders[word] &= ~zeros[word];
+            zeroCount += Long.bitCount(zeros[word]);
+            borderCount += Long.bitCount(borders[word]);
+        }
+        final int[] labels = new int[size()];
+        joinZeros(labels, zeros, wordCount);
+        final int[] starts = numberOpenings(labels, zeros, wordCount);
+        final int[] borderOpenings = countBorders(labels, borders, wordCount, starts, borderCount);
+        final int openingCount = starts.length - 1;
+        for (int i = 1; i <= openingCount; i++) {
+            starts[i] += starts[i - 1];
+        }
+        openings = labels;
+        openingStarts = starts;
+        openingTiles = listOpenings(labels, zeros, borders, wordCount, starts, borderOpenings);
+        isolatedClueCount = size() - countMines() - zeroCount - borderCount;
+        generated = true;
+    }
+
+    /**
+     * Returns bitset of zero tiles in row words stored one row after another,
+     * bit c of word w of a row is column 64 * w + c.
+     *
+     * @param wordCount number of words of one row
+     * @return zero tiles
+     */
+    private long[] zeroWords(int wordCount) {
+        final int rowCount = getRowCount();
+        final int columnCount = getColumnCount();
+        final long[] zeros = new long[rowCount * wordCount];
+        final long[] words = new long[wordCount];
+        for (int row = 0; row < rowCount; row++) {
+            rowWords(row, words);
+            System.arraycopy(words, 0, zeros, row * wordCount, wordCount);
+        }
+        spread(zeros, wordCount);
+        final long lastMask = (columnCount & 63) == 0 ? -1L : (1L << columnCount) - 1;
+        for (int word = 0; word < zeros.length; word++) {
+            zeros[word] = ~zeros[word];
+            if (word % wordCount == wordCount - 1) {
+                zeros[word] &= lastMask;
+            }
+        }
+        return zeros;
+    }
+
+    /**
+     * Joins zero tiles into sets in index order. A tile joins the set of its
+     * zero neighbour to the left or above, only a tile between two such
+     * neighbours which do not touch each other joins their sets by
+     * union-find. Every parent has a smaller index than its child.
+     *
+     * @param labels array to fill with parent plus one of zero tiles, roots
+     * are their own parents
+     * @param zeros zero tiles
+     * @param wordCount number of words of one row
+     */
+    private void joinZeros(int[] labels, long[] zeros, int wordCount) {
+        final int rowCount = getRowCount();
+        final int columnCount = getColumnCount();
+        for (int row = 0; row < rowCount; row++) {
+            for (int word = 0; word < wordCount; word++) {
+                for (long bits = zeros[row * wordCount + word]; bits != 0; bits &= bits - 1) {
+                    final int column = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    final int index = row * columnCount + column;
+                    final int above = index - columnCount;
+                    final boolean left = column > 0 && labels[index - 1] != 0;
+                    final boolean upLeft = row > 0 && column > 0 && labels[above - 1] != 0;
+                    final boolean up = row > 0 && labels[above] != 0;
+                    final boolean upRight = row > 0 && column + 1 < columnCount && labels[above + 1] != 0;
+                    if (left) {
+                        // the left neighbour touches the tiles above except the one up right
+                        labels[index] = labels[index - 1];
+                        if (upRight && !up) {
+                            union(labels, index, above + 1);
+                        }
+                    } else if (up) {
+                        labels[index] = labels[above];
+                    } else if (upLeft) {
+                        labels[index] = labels[above - 1];
+                        if (upRight) {
+                            union(labels, index, above + 1);
+                        }
+                    } else if (upRight) {
+                        labels[index] = labels[above + 1];
+                    } else {
+                        labels[index] = index + 1;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces parents of zero tiles by opening numbers. Parents precede
+     * their children, so they are already numbered when visited in index
+     * order.
+     *
+     * @param labels parent plus one of zero tiles, replaced by opening number
+     * plus one
+     * @param zeros zero tiles
+     * @param wordCount number of words of one row
+     * @return array of opening count plus one entries, entry of opening
+     * number plus one holds the number of its zero tiles
+     */
+    private int[] numberOpenings(int[] labels, long[] zeros, int wordCount) {
+        final int rowCount = getRowCount();
+        final int columnCount = getColumnCount();
+        int openingCount = 0;
+        int[] sizes = new int[64];
+        for (int row = 0; row < rowCount; row++) {
+            for (int word = 0; word < wordCount; word++) {
+                for (long bits = zeros[row * wordCount + word]; bits != 0; bits &= bits - 1) {
+                    final int index = row * columnCount + (word << 6) + Long.numberOfTrailingZeros(bits);
+                    if (labels[index] == index + 1) {
+                        labels[index] = ++openingCount;
+                        if (openingCount == sizes.length) {
+                            sizes = Arrays.copyOf(sizes, openingCount * 2);
+                        }
+                    } else {
+                        labels[index] = labels[labels[index] - 1];
+                    }
+                    sizes[labels[index]]++;
+                }
+            }
+        }
+        return Arrays.copyOf(sizes, openingCount + 1);
+    }
+
+    /**
+     * Adds bordering clues to opening sizes.
+     *
+     * @param labels opening number plus one of zero tiles
+     * @param borders bordering clues
+     * @param wordCount number of words of one row
+     * @param sizes opening sizes indexed by opening number plus one
+     * @param borderCount number of bordering clues
+     * @return opening number plus one of each bordering clue in index order,
+     * 0 for clues bordering several openings
+     */
+    private int[] countBorders(int[] labels, long[] borders, int wordCount, int[] sizes, int borderCount) {
+        final int rowCount = getRowCount();
+        final int[] borderOpenings = new int[borderCount];
+        final int[] adjacent = new int[8];
+        int border = 0;
+        for (int row = 0; row < rowCount; row++) {
+            for (int word = 0; word < wordCount; word++) {
+                for (long bits = borders[row * wordCount + word]; bits != 0; bits &= bits - 1) {
+                    final int column = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    final int count = adjacentOpenings(labels, row, column, adjacent);
+                    for (int i = 0; i < count; i++) {
+                        sizes[adjacent[i]]++;
+                    }
+                    borderOpenings[border++] = count == 1 ? adjacent[0] : 0;
+                }
+            }
+        }
+        return borderOpenings;
+    }
+
+    /**
+     * Lists tiles of all openings in one array.
+     *
+     * @param labels opening number plus one of zero tiles
+     * @param zeros zero tiles
+     * @param borders bordering clues
+     * @param wordCount number of words of one row
+     * @param starts start of each opening in the array, the last entry is
+     * the array length
+     * @param borderOpenings opening number plus one of bordering clues
+     * @return tiles of all openings
+     */
+    private int[] listOpenings(int[] labels, long[] zeros, long[] borders, int wordCount, int[] starts,
+            int[] borderOpenings) {
+        final int rowCount = getRowCount();
+        final int columnCount = getColumnCount();
+        final int[] tiles = new int[starts[starts.length - 1]];
+        final int[] next = Arrays.copyOf(starts, starts.length - 1);
+        final int[] adjacent = new int[8];
+        int border = 0;
+        for (int row = 0; row < rowCount; row++) {
+            for (int word = 0; word < wordCount; word++) {
+                final int wordStart = row * columnCount + (word << 6);
+                for (long bits = zeros[row * wordCount + word]; bits != 0; bits &= bits - 1) {
+                    final int index = wordStart + Long.numberOfTrailingZeros(bits);
+                    tiles[next[labels[index] - 1]++] = index;
+                }
+                for (long bits = borders[row * wordCount + word]; bits != 0; bits &= bits - 1) {
+                    final int column = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    final int opening = borderOpenings[border++];
+                    if (opening != 0) {
+                        tiles[next[opening - 1]++] = row * columnCount + column;
+                    } else {
+                        final int count = adjacentOpenings(labels, row, column, adjacent);
+                        for (int i = 0; i < count; i++) {
+                            tiles[next[adjacent[i] - 1]++] = row * columnCount + column;
+                        }
+                    }
+                }
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * Sets bits of all neighbours of set tiles in row words stored one row
+     * after another. Bits beyond the last column stay clear.
+     *
+     * @param rows row words, changed in place
+     * @param wordCount number of words of one row
+     */
+    private void spread(long[] rows, int wordCount) {
+        final int rowCount = getRowCount();
+        final int columnCount = getColumnCount();
+        final long lastMask = (columnCount & 63) == 0 ? -1L : (1L << columnCount) - 1;
+        final long[] vertical = new long[wordCount];
+        long[] above = new long[wordCount];
+        long[] current = Arrays.copyOf(rows, wordCount);
+        for (int row = 0; row < rowCount; row++) {
+            final int rowStart = row * wordCount;
+            for (int word = 0; word < wordCount; word++) {
+                vertical[word] = above[word] | current[word];
+                if (row + 1 < rowCount) {
+                    vertical[word] |= rows[rowStart + wordCount + word];
+                }
+            }
+            final long[] recycled = above;
+            above = current;
+            current = recycled;
+            if (row + 1 < rowCount) {
+                System.arraycopy(rows, rowStart + wordCount, current, 0, wordCount);
+            }
+            for (int word = 0; word < wordCount; word++) {
+                rows[rowStart + word] = shiftLeft(vertical, word) | vertical[word] | shiftRight(vertical, word);
+            }
+            rows[rowStart + wordCount - 1] &= lastMask;
+        }
+    }
+
+    /**
+     * Joins sets of two zero tiles, the root with bigger index gets the other
+     * root as its parent.
+     *
+     * @param parents parent plus one of zero tiles
+     * @param first flat index of first tile
+     * @param second flat index of second tile
+     */
+    private static void union(int[] parents, int first, int second) {
+        final int firstRoot = find(parents, first);
+        final int secondRoot = find(parents, second);
+        if (firstRoot < secondRoot) {
+            parents[secondRoot] = firstRoot + 1;
+        } else if (secondRoot < firstRoot) {
+            parents[firstRoot] = secondRoot + 1;
+        }
+    }
+
+    /**
+     * Returns root of the set of a zero tile, the path is halved on the way.
+     *
+     * @param parents parent plus one of zero tiles
+     * @param index flat index
+     * @return flat index of the root
+     */
+    private static int find(int[] parents, int index) {
+        while (parents[index] != index + 1) {
+            final int parent = parents[index] - 1;
+            parents[index] = parents[parent];
+            index = parent;
+        }
+        return index;
+    }
+
+    /**
+     * Collects distinct openings of the zero neighbours of a tile. Most clues
+     * border one opening only, the neighbours are compared with the first
+     * found opening and collected one by one only if they differ.
+     *
+     * @param labels opening number plus one of zero tiles
+     * @param row tile row
+     * @param column tile column
+     * @param adjacent array to fill with opening numbers plus one
+     * @return number of collected openings
+     */
+    private int adjacentOpenings(int[] labels, int row, int column, int[] adjacent) {
+        final int columnCount = getColumnCount();
+        final int firstColumn = Math.max(column - 1, 0);
+        final int lastColumn = Math.min(column + 1, columnCount - 1);
+        final int firstRow = Math.max(row - 1, 0);
+        final int lastRow = Math.min(row + 1, getRowCount() - 1);
+        int first = 0;
+        boolean several = false;
+        for (int actRow = firstRow; actRow <= lastRow; actRow++) {
+            final int rowStart = actRow * columnCount;
+            for (int actColumn = firstColumn; actColumn <= lastColumn; actColumn++) {
+                final int label = labels[rowStart + actColumn];
+                if (first == 0) {
+                    first = label;
+                } else if (label != 0 && label != first) {
+                    several = true;
+                }
+            }
+        }
+        if (!several) {
+            adjacent[0] = first;
+            return first != 0 ? 1 : 0;
+        }
+        int count = 0;
+        for (int actRow = firstRow; actRow <= lastRow; actRow++) {
+            final int rowStart = actRow * columnCount;
+            for (int actColumn = firstColumn; actColumn <= lastColumn; actColumn++) {
+                final int label = labels[rowStart + actColumn];
+                if (label != 0) {
+                    int i = 0;
+                    while (i < count && adjacent[i] != label) {
+                        i++;
+                    }
+                    if (i == count) {
+                        adjacent[count++] = label;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Unpacks mines of one row into words, bit c of word w is column
+     * 64 * w + c.
+     *
+     * @param row row number
+     * @param words words to fill
+     */
+    private void rowWords(int row, long[] words) {
+        final int columnCount = getColumnCount();
+        final int rowStart = index(row, 0);
+        for (int word = 0; word < words.length; word++) {
+            final int position = rowStart + (word << 6);
+            final int offset = position & 63;
+            final int mineWord = position >>> 6;
+            long bits = mines[mineWord] >>> offset;
+            if (offset != 0 && mineWord + 1 < mines.length) {
+                bits |= mines[mineWord + 1] << (64 - offset);
+            }
+            final int remaining = columnCount - (word << 6);
+            if (remaining < 64) {
+                bits &= (1L << remaining) - 1;
+            }
+            words[word] = bits;
+        }
+    }
+
+    /**
+     * Returns word of left neighbours, bit c holds tile at column c - 1.
+     *
+     * @param words row words
+     * @param word word number
+     * @return word of left neighbours
+     */
+    private static long shiftLeft(long[] words, int word) {
+        return word > 0 ? (words[word] << 1) | (words[word - 1] >>> 63) : words[word] << 1;
+    }
+
+    /**
+     * Returns word of right neighbours, bit c holds tile at column c + 1.
+     *
+     * @param words row words
+     * @param word word number
+     * @return word of right neighbours
+     */
+    private static long shiftRight(long[] words, int word) {
+        return word + 1 < words.length ? (words[word] >>> 1) | (words[word + 1] << 63) : words[word] >>> 1;
+    }
+
+    /**
+     * Returns pool for parallel generation, creates it if needed.
+     *
+     * @return shared pool
+     */
+    private static synchronized ForkJoinPool sharedPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool();
+        }
+        return pool;
+    }
+
+    /**
+     * Action on a part of a range of integers.
+     */
+    private interface RangeAction {
+
+        /**
+         * Processes part of the range.
+         *
+         * @param from first value
+         * @param to value after the last value
+         */
+        void run(int from, int to);
+    }
+
+    /**
+     * Task running an action over range of integers, split in halves down to
+     * the given grain. Ranges are split at multiples of the grain.
+     */
+    private static final class RangeTask extends RecursiveAction {
+
+        /**
+         * First value of the range.
+         */
+        private final int from;
+
+        /**
+         * Value after the last value of the range.
+         */
+        private final int to;
+
+        /**
+         * Size of the smallest range.
+         */
+        private final int grain;
+
+        /**
+         * Action to run.
+         */
+        private final RangeAction action;
+
+        /**
+         * Constructor.
+         *
+         * @param from first value of the range
+         * @param to value after the last value of the range
+         * @param grain size of the smallest range
+         * @param action action to run
+         */
+        RangeTask(int from, int to, int grain, RangeAction action) {
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                action.run(from, to);
+                return;
+            }
+            final int middle = from + Math.max(1, (to - from) / grain / 2) * grain;
+            invokeAll(new RangeTask(from, middle, grain, action), new RangeTask(middle, to, grain, action));
+        }
+    }
+
+    @Override
+    boolean isMine(int index) {
+        return (mines[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Returns mine bitset words. Bit {@code index & 63} of word
+     * {@code index >>> 6} is set for every mine.
+     *
+     * @return mine bitset
+     */
+    long[] getMineWords() {
+        return mines;
+    }
+
+    /**
+     * Returns number of mines.
+     *
+     * @return number of mines
+     */
+    int countMines() {
+        int count = 0;
+        for (int i = 0; i < mines.length; i++) {
+            count += Long.bitCount(mines[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Returns index of the first mine at or after index.
+     *
+     * @param index flat index to start from
+     * @return flat index of the mine or -1 if there is none
+     */
+    int nextMine(int index) {
+        int word = index >>> 6;
+        if (word >= mines.length) {
+            return -1;
+        }
+        long bits = mines[word] & (-1L << index);
+        while (bits == 0) {
+            if (++word == mines.length) {
+                return -1;
+            }
+            bits = mines[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * Returns opening of a tile without adjacent mines.
+     *
+     * @param index flat index
+     * @return opening number or -1 for other tiles and boards without mines
+     * placed
+     */
+    int getOpening(int index) {
+        return openings == null ? -1 : openings[index] - 1;
+    }
+
+    /**
+     * Returns start of the tiles of each opening in
+     * {@link #getOpeningTiles()}, entry {@code opening + 1} is the end.
+     *
+     * @return opening starts, null until mines are placed
+     */
+    int[] getOpeningStarts() {
+        return openingStarts;
+    }
+
+    /**
+     * Returns flat indices of the tiles of all openings, the zero tiles and
+     * their bordering clues.
+     *
+     * @return opening tiles, null until mines are placed
+     */
+    int[] getOpeningTiles() {
+        return openingTiles;
+    }
+
+    /**
+     * Returns number of openings.
+     *
+     * @return opening count or -1 until mines are placed
+     */
+    int getOpeningCount() {
+        return openingStarts == null ? -1 : openingStarts.length - 1;
+    }
+
+    /**
+     * Returns number of clues which do not border any opening.
+     *
+     * @return isolated clue count
+     */
+    int getIsolatedClueCount() {
+        return isolatedClueCount;
+    }
+
+    @Override
+    int[] getMinePositions() {
+        return minePositions;
+    }
+
+    @Override
+    int getClue(int index) {
+        return clues[index];
+    }
+
+    @Override
+    byte getState(int index) {
+        return statePages[index >>> PAGE_SHIFT][index & PAGE_MASK];
+    }
+
+    @Override
+    boolean compareAndSetState(int index, byte expected, byte state) {
+        final int page = index >>> PAGE_SHIFT;
+        if (statePages[page][index & PAGE_MASK] != expected) {
+            return false;
+        }
+        if (pageEpochs[page] != epoch) {
+            statePages[page] = statePages[page].clone();
+            pageEpochs[page] = epoch;
+        }
+        statePages[page][index & PAGE_MASK] = state;
+        return true;
+    }
+
+    @Override
+    ArrayBoard getLayout() {
+        return this;
+    }
+
+    /**
+     * Returns snapshot sharing mines and clues with this board. State pages
+     * are shared too, both boards copy a page when they first write it: this
+     * board moves to a new epoch, so it owns none of its pages, and readers
+     * of the board are not disturbed.
+     *
+     * @return snapshot
+     */
+    @Override
+    ArrayBoard snapshot() {
+        epoch = EPOCHS.incrementAndGet();
+        return new ArrayBoard(this);
+    }
+}
@@ -0,0 +1,179 @@
+package minesweeper.core;
+
+import java.io.Serializable;
+
+/**
+ * Storage of field tiles. Tiles are addressed by flat index
+ * {@code row * columnCount + column}, tile states are stored as byte codes.
+ */
+abstract class Board implements Serializable {
+
+    /**
+     * Closed tile state code. Zero so that new boards start closed.
+     */
+    static final byte CLOSED = 0;
+    /**
+     * Open tile state code.
+     */
+    static final byte OPEN = 1;
+    /**
+     * Marked tile state code.
+     */
+    static final byte MARKED = 2;
+    /**
+     * Questioned tile state code.
+     */
+    static final byte QUEST = 3;
+    /**
+     * Wrong marked tile state code.
+     */
+    static final byte WRONG_MARKED = 4;
+
+    /**
+     * Tile states indexed by state code.
+     */
+    private static final Tile.State[] STATES = {
+        Tile.State.CLOSED, Tile.State.OPEN, Tile.State.MARKED, Tile.State.QUEST, Tile.State.WRONG_MARKED
+    };
+
+    /**
+     * Row count.
+     */
+    private final int rowCount;
+
+    /**
+     * Column count.
+     */
+    private final int columnCount;
+
+    /**
+     * Constructor.
+     *
+     * @param rowCount row count
+     * @param columnCount column count
+     */
+    Board(int rowCount, int columnCount) {
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+    }
+
+    /**
+     * Returns row count.
+     *
+     * @return row count
+     */
+    int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns column count.
+     *
+     * @return column count
+     */
+    int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * Returns number of tiles.
+     *
+     * @return number of tiles
+     */
+    int size() {
+        return rowCount * columnCount;
+    }
+
+    /**
+     * Returns flat index of a tile.
+     *
+     * @param row row number
+     * @param column column number
+     * @return flat index
+     */
+    int index(int row, int column) {
+        return row * columnCount + column;
+    }
+
+    /**
+     * Returns true if tile at index contains mine.
+     *
+     * @param index flat index
+     * @return true if tile contains mine
+     */
+    abstract boolean isMine(int index);
+
+    /**
+     * Returns clue value at index, i.e. number of adjacent mines.
+     *
+     * @param index flat index
+     * @return clue value
+     */
+    abstract int getClue(int index);
+
+    /**
+     * Returns state code at index.
+     *
+     * @param index flat index
+     * @return state code
+     */
+    abstract byte getState(int index);
+
+    /**
+     * Sets state code at index if the current state code is the expected one.
+     * Boards shared by threads do this atomically.
+     *
+     * @param index flat index
+     * @param expected expected state code
+     * @param state new state code
+     * @return true if the state was set
+     */
+    abstract boolean compareAndSetState(int index, byte expected, byte state);
+
+    /**
+     * Returns flat indices of all mines generated so far.
+     *
+     * @return mine positions
+     */
+    abstract int[] getMinePositions();
+
+    /**
+     * Returns dense board with the complete mine layout of this board.
+     *
+     * @return layout board, null if the layout is not generated at once
+     */
+    ArrayBoard getLayout() {
+        return null;
+    }
+
+    /**
+     * Returns independent copy of the board. Immutable data are shared, so
+     * the copy is cheap.
+     *
+     * @return copy of the board
+     */
+    abstract Board snapshot();
+
+    /**
+     * Converts state code to tile state.
+     *
+     * @param code state code
+     * @return tile state
+     */
+    static Tile.State toState(byte code) {
+        return STATES[code];
+    }
+
+    /**
+     * Scrambles seed bits, so that neighbouring seeds such as 1, 2, 3 do not
+     * give correlated first random numbers.
+     *
+     * @param seed seed
+     * @return scrambled seed
+     */
+    static long mix(long seed) {
+        seed = (seed ^ (seed >>> 33)) * 0xff51afd7ed558ccdL;
+        seed = (seed ^ (seed >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return seed ^ (seed >>> 33);
+    }
+}
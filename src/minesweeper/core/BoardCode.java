@@ -0,0 +1,163 @@
+package minesweeper.core;
+
+/**
+ * Board codes - short strings from which a field can be recreated.
+ * <p>
+ * Seed code {@code S<rows>x<columns>x<mines>.<seed>} names a generated board,
+ * layout code {@code L<rows>x<columns>.<bitset>} carries an explicit mine
+ * layout as URL safe base64 of the mine bitset, six tiles per character in
+ * flat index order.
+ */
+public final class BoardCode {
+
+    /**
+     * Base64 URL safe alphabet.
+     */
+    private static final char[] ALPHABET
+            = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+    /**
+     * Values of alphabet characters, -1 for invalid characters.
+     */
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        java.util.Arrays.fill(VALUES, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            VALUES[ALPHABET[i]] = (byte) i;
+        }
+    }
+
+    /**
+     * Empty constructor.
+     */
+    private BoardCode() {
+    }
+
+    /**
+     * Returns seed code of a generated board.
+     *
+     * @param rowCount row count
+     * @param columnCount column count
+     * @param mineCount mine count
+     * @param seed seed of the mine layout
+     * @return seed code
+     */
+    public static String encodeSeed(int rowCount, int columnCount, int mineCount, long seed) {
+        return "S" + rowCount + "x" + columnCount + "x" + mineCount + "." + seed;
+    }
+
+    /**
+     * Returns layout code of the field mines, seed code if the mines are not
+     * placed yet.
+     *
+     * @param field field
+     * @return layout code
+     * @throws IllegalArgumentException if the field is endless or has no
+     * mines yet and keeps only the first opened tile free
+     */
+    public static String encode(Field field) {
+        if (field.isPending()) {
+            if (!field.isOpening()) {
+                throw new IllegalArgumentException("Wrong field, mines are not placed yet!");
+            }
+            return encodeSeed(field.getRowCount(), field.getColumnCount(), field.getMineCount(), field.getSeed());
+        }
+        final ArrayBoard board = field.getBoard().getLayout();
+        if (board == null) {
+            throw new IllegalArgumentException("Endless field has no layout code!");
+        }
+        final long[] mines = board.getMineWords();
+        final int size = board.size();
+        final String prefix = "L" + board.getRowCount() + "x" + board.getColumnCount() + ".";
+
+        final int length = codeLength(size);
+        final char[] code = new char[prefix.length() + length];
+        prefix.getChars(0, prefix.length(), code, 0);
+        int out = prefix.length();
+        for (int i = 0; i < length; i++) {
+            final int position = i * 6;
+            final int word = position >>> 6;
+            final int offset = position & 63;
+            long bits = mines[word] >>> offset;
+            if (offset > 58 && word + 1 < mines.length) {
+                bits |= mines[word + 1] << (64 - offset);
+            }
+            code[out++] = ALPHABET[(int) (bits & 63)];
+        }
+        return new String(code);
+    }
+
+    /**
+     * Creates field from seed or layout code.
+     *
+     * @param code board code
+     * @return new field
+     */
+    public static Field decode(String code) {
+        try {
+            final int dot = code.indexOf('.');
+            final int rowEnd = code.indexOf('x');
+            final int rowCount = Integer.parseInt(code.substring(1, rowEnd));
+
+            if (code.charAt(0) == 'S') {
+                final int columnEnd = code.indexOf('x', rowEnd + 1);
+                final int columnCount = Integer.parseInt(code.substring(rowEnd + 1, columnEnd));
+                final int mineCount = Integer.parseInt(code.substring(columnEnd + 1, dot));
+                return new Field(rowCount, columnCount, mineCount, Long.parseLong(code.substring(dot + 1)));
+            }
+            final int columnCount = Integer.parseInt(code.substring(rowEnd + 1, dot));
+            if (rowCount <= 0 || columnCount <= 0 || (long) rowCount * columnCount > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Wrong board code size!");
+            }
+            if (code.charAt(0) == 'L') {
+                final ArrayBoard board = new ArrayBoard(rowCount, columnCount, decodeMines(code, dot + 1, rowCount * columnCount));
+                return new Field(board, board.countMines(), 0);
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Wrong board code!", e);
+        }
+        throw new IllegalArgumentException("Wrong board code!");
+    }
+
+    /**
+     * Decodes mine bitset from base64 part of layout code.
+     *
+     * @param code layout code
+     * @param start index of the first base64 character
+     * @param size number of tiles
+     * @return mine bitset
+     */
+    private static long[] decodeMines(String code, int start, int size) {
+        final int length = codeLength(size);
+        if (code.length() - start != length) {
+            throw new IllegalArgumentException("Wrong board code length!");
+        }
+        final long[] mines = new long[(size + 63) >>> 6];
+        for (int i = 0; i < length; i++) {
+            final int position = i * 6;
+            final char c = code.charAt(start + i);
+            final long bits = c < 128 ? VALUES[c] : -1;
+            if (bits < 0 || (size - position < 6 && bits >>> (size - position) != 0)) {
+                throw new IllegalArgumentException("Wrong board code character!");
+            }
+            final int word = position >>> 6;
+            final int offset = position & 63;
+            mines[word] |= bits << offset;
+            if (offset > 58 && word + 1 < mines.length) {
+                mines[word + 1] |= bits >>> (64 - offset);
+            }
+        }
+        return mines;
+    }
+
+    /**
+     * Returns number of base64 characters of a mine bitset.
+     *
+     * @param size number of tiles
+     * @return number of characters
+     */
+    private static int codeLength(int size) {
+        return (int) ((size + 5L) / 6);
+    }
+}
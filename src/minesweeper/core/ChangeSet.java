@@ -0,0 +1,133 @@
+package minesweeper.core;
+
+import java.util.Arrays;
+
+/**
+ * Tiles whose state was changed by one field mutation, together with the game
+ * state after the mutation. The field reuses one change set, its content is
+ * valid until the next mutation of the field.
+ */
+public final class ChangeSet {
+
+    /**
+     * Column count of the field, used to split flat indices.
+     */
+    private final int columnCount;
+
+    /**
+     * Flat indices of changed tiles, first size entries are valid.
+     */
+    private int[] indices = new int[16];
+
+    /**
+     * Number of changed tiles.
+     */
+    private int size;
+
+    /**
+     * Game state after the mutation.
+     */
+    private GameState state = GameState.PLAYING;
+
+    /**
+     * Tile counter changes not yet added to the field, indexed by state code
+     * and {@link Field#SAFE_OPEN}.
+     */
+    final int[] countDeltas = new int[Field.COUNTER_COUNT];
+
+    /**
+     * Position hash change not yet added to the field.
+     */
+    long hashDelta;
+
+    /**
+     * Reusable stack of flat indices of zero tiles waiting to be expanded.
+     */
+    int[] revealStack;
+
+    /**
+     * Constructor.
+     *
+     * @param columnCount column count of the field
+     */
+    ChangeSet(int columnCount) {
+        this.columnCount = columnCount;
+    }
+
+    /**
+     * Starts recording of a new mutation.
+     */
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Records changed tile.
+     *
+     * @param index flat index of the tile
+     */
+    void add(int index) {
+        if (size == indices.length) {
+            indices = Arrays.copyOf(indices, size * 2);
+        }
+        indices[size++] = index;
+    }
+
+    /**
+     * Sets game state after the mutation.
+     *
+     * @param state game state
+     */
+    void setState(GameState state) {
+        this.state = state;
+    }
+
+    /**
+     * Returns number of changed tiles.
+     *
+     * @return number of changed tiles
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns flat index {@code row * columnCount + column} of i-th changed
+     * tile.
+     *
+     * @param i number of the change
+     * @return flat index
+     */
+    public int getIndex(int i) {
+        return indices[i];
+    }
+
+    /**
+     * Returns row of i-th changed tile.
+     *
+     * @param i number of the change
+     * @return row
+     */
+    public int getRow(int i) {
+        return indices[i] / columnCount;
+    }
+
+    /**
+     * Returns column of i-th changed tile.
+     *
+     * @param i number of the change
+     * @return column
+     */
+    public int getColumn(int i) {
+        return indices[i] % columnCount;
+    }
+
+    /**
+     * Returns game state after the mutation.
+     *
+     * @return game state
+     */
+    public GameState getState() {
+        return state;
+    }
+}
@@ -0,0 +1,340 @@
+package minesweeper.core;
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * Board divided into square chunks which are generated lazily. Mines of a
+ * chunk are generated from the board seed when any of its tiles or their
+ * neighbours are first looked at, clues when a tile of the chunk is first
+ * asked for its clue. Untouched chunks take no memory.
+ * <p>
+ * Each chunk gets its share of mines proportional to its area, so the board
+ * has exactly the requested number of mines.
+ */
+final class ChunkedBoard extends Board {
+
+    /**
+     * Binary logarithm of chunk size.
+     */
+    static final int CHUNK_SHIFT = 6;
+
+    /**
+     * Number of rows and columns of a chunk.
+     */
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    /**
+     * Mask of row or column position inside chunk.
+     */
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * Mine count of the whole board.
+     */
+    private final int mineCount;
+
+    /**
+     * Seed of the mine layout.
+     */
+    private final long seed;
+
+    /**
+     * Number of chunk columns.
+     */
+    private final int chunkColumnCount;
+
+    /**
+     * Generated chunks, chunk rows are allocated when first touched.
+     */
+    private final Chunk[][] chunks;
+
+    /**
+     * One chunk of the board.
+     */
+    private static final class Chunk implements Serializable {
+
+        /**
+         * Mine bitset, one word per chunk row.
+         */
+        private final long[] mines;
+
+        /**
+         * Flat indices of mines in the chunk.
+         */
+        private int[] minePositions;
+
+        /**
+         * Clue values, null until computed.
+         */
+        private byte[] clues;
+
+        /**
+         * Tile state codes, null while all tiles are closed.
+         */
+        private byte[] states;
+
+        /**
+         * True if states are owned by this chunk, false if they are shared
+         * with a snapshot and must be copied before write.
+         */
+        private boolean ownedStates = true;
+
+        /**
+         * Constructor of a chunk without mines.
+         */
+        private Chunk() {
+            this(new long[CHUNK_SIZE]);
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param mines mine bitset
+         */
+        private Chunk(long[] mines) {
+            this.mines = mines;
+        }
+
+        /**
+         * Returns copy sharing mines, clues and states with this chunk.
+         *
+         * @return copy of the chunk
+         */
+        private Chunk snapshot() {
+            final Chunk copy = new Chunk(mines);
+            copy.minePositions = minePositions;
+            copy.clues = clues;
+            copy.states = states;
+            copy.ownedStates = false;
+            ownedStates = false;
+            return copy;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param rowCount row count
+     * @param columnCount column count
+     * @param mineCount mine count
+     * @param seed seed of the mine layout
+     */
+    ChunkedBoard(int rowCount, int columnCount, int mineCount, long seed) {
+        super(rowCount, columnCount);
+        this.mineCount = mineCount;
+        this.seed = seed;
+        chunkColumnCount = (columnCount + CHUNK_MASK) >> CHUNK_SHIFT;
+        chunks = new Chunk[(rowCount + CHUNK_MASK) >> CHUNK_SHIFT][];
+    }
+
+    /**
+     * Returns snapshot of the board. Generated chunks share their data with
+     * the snapshot, states are copied by chunk when first written.
+     *
+     * @return snapshot
+     */
+    @Override
+    ChunkedBoard snapshot() {
+        final ChunkedBoard copy = new ChunkedBoard(getRowCount(), getColumnCount(), mineCount, seed);
+        for (int chunkRow = 0; chunkRow < chunks.length; chunkRow++) {
+            if (chunks[chunkRow] != null) {
+                copy.chunks[chunkRow] = new Chunk[chunkColumnCount];
+                for (int chunkColumn = 0; chunkColumn < chunkColumnCount; chunkColumn++) {
+                    if (chunks[chunkRow][chunkColumn] != null) {
+                        copy.chunks[chunkRow][chunkColumn] = chunks[chunkRow][chunkColumn].snapshot();
+                    }
+                }
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Returns chunk containing tile, generates its mines if needed.
+     *
+     * @param row row number
+     * @param column column number
+     * @return chunk
+     */
+    private Chunk chunk(int row, int column) {
+        final int chunkRow = row >> CHUNK_SHIFT;
+        final int chunkColumn = column >> CHUNK_SHIFT;
+        Chunk[] chunkRowChunks = chunks[chunkRow];
+        if (chunkRowChunks == null) {
+            chunkRowChunks = new Chunk[chunkColumnCount];
+            chunks[chunkRow] = chunkRowChunks;
+        }
+        Chunk chunk = chunkRowChunks[chunkColumn];
+        if (chunk == null) {
+            chunk = generateChunk(chunkRow, chunkColumn);
+            chunkRowChunks[chunkColumn] = chunk;
+        }
+        return chunk;
+    }
+
+    /**
+     * Returns chunk containing tile if it was already generated.
+     *
+     * @param row row number
+     * @param column column number
+     * @return chunk or null
+     */
+    private Chunk loadedChunk(int row, int column) {
+        final Chunk[] chunkRowChunks = chunks[row >> CHUNK_SHIFT];
+        return chunkRowChunks == null ? null : chunkRowChunks[column >> CHUNK_SHIFT];
+    }
+
+    /**
+     * Generates mines of a chunk with Floyd's sampling.
+     *
+     * @param chunkRow chunk row
+     * @param chunkColumn chunk column
+     * @return new chunk
+     */
+    private Chunk generateChunk(int chunkRow, int chunkColumn) {
+        final int top = chunkRow << CHUNK_SHIFT;
+        final int left = chunkColumn << CHUNK_SHIFT;
+        final int height = Math.min(CHUNK_SIZE, getRowCount() - top);
+        final int width = Math.min(CHUNK_SIZE, getColumnCount() - left);
+        final int area = height * width;
+
+        // mines are split by area in flat chunk order, so shares add up to mineCount
+        final long areaBefore = (long) top * getColumnCount() + (long) height * left;
+        final int chunkMineCount = (int) ((long) mineCount * (areaBefore + area) / size()
+                - (long) mineCount * areaBefore / size());
+
+        final Chunk chunk = new Chunk();
+        chunk.minePositions = new int[chunkMineCount];
+        final long chunkIndex = (long) chunkRow * chunkColumnCount + chunkColumn;
+        final Random random = new Random(mix(seed + chunkIndex * 0x9e3779b97f4a7c15L));
+        int i = 0;
+        for (int candidate = area - chunkMineCount; candidate < area; candidate++) {
+            int local = random.nextInt(candidate + 1);
+            if ((chunk.mines[local / width] & (1L << (local % width))) != 0) {
+                local = candidate;
+            }
+            chunk.mines[local / width] |= 1L << (local % width);
+            chunk.minePositions[i++] = index(top + local / width, left + local % width);
+        }
+        return chunk;
+    }
+
+    /**
+     * Computes clues of a chunk. Mines of neighbouring chunks are generated
+     * as needed, so clues on chunk borders are exact.
+     *
+     * @param chunk chunk
+     * @param top first row of the chunk
+     * @param left first column of the chunk
+     */
+    private void computeClues(Chunk chunk, int top, int left) {
+        final int bottom = Math.min(top + CHUNK_SIZE, getRowCount());
+        final int right = Math.min(left + CHUNK_SIZE, getColumnCount());
+        final byte[] clues = new byte[CHUNK_SIZE * CHUNK_SIZE];
+        for (int row = top; row < bottom; row++) {
+            for (int column = left; column < right; column++) {
+                int count = 0;
+                for (int actRow = Math.max(row - 1, 0); actRow <= Math.min(row + 1, getRowCount() - 1); actRow++) {
+                    for (int actColumn = Math.max(column - 1, 0); actColumn <= Math.min(column + 1, getColumnCount() - 1); actColumn++) {
+                        if ((actRow != row || actColumn != column) && isMine(actRow, actColumn)) {
+                            count++;
+                        }
+                    }
+                }
+                clues[((row & CHUNK_MASK) << CHUNK_SHIFT) | (column & CHUNK_MASK)] = (byte) count;
+            }
+        }
+        chunk.clues = clues;
+    }
+
+    /**
+     * Returns true if tile contains mine.
+     *
+     * @param row row number
+     * @param column column number
+     * @return true if tile contains mine
+     */
+    private boolean isMine(int row, int column) {
+        return (chunk(row, column).mines[row & CHUNK_MASK] & (1L << (column & CHUNK_MASK))) != 0;
+    }
+
+    @Override
+    boolean isMine(int index) {
+        final int row = index / getColumnCount();
+        return isMine(row, index - row * getColumnCount());
+    }
+
+    @Override
+    int getClue(int index) {
+        final int row = index / getColumnCount();
+        final int column = index - row * getColumnCount();
+        final Chunk chunk = chunk(row, column);
+        if (chunk.clues == null) {
+            computeClues(chunk, row & ~CHUNK_MASK, column & ~CHUNK_MASK);
+        }
+        return chunk.clues[((row & CHUNK_MASK) << CHUNK_SHIFT) | (column & CHUNK_MASK)];
+    }
+
+    @Override
+    byte getState(int index) {
+        final int row = index / getColumnCount();
+        final int column = index - row * getColumnCount();
+        final Chunk chunk = loadedChunk(row, column);
+        if (chunk == null || chunk.states == null) {
+            return CLOSED;
+        }
+        return chunk.states[((row & CHUNK_MASK) << CHUNK_SHIFT) | (column & CHUNK_MASK)];
+    }
+
+    @Override
+    boolean compareAndSetState(int index, byte expected, byte state) {
+        if (getState(index) != expected) {
+            return false;
+        }
+        final int row = index / getColumnCount();
+        final int column = index - row * getColumnCount();
+        final Chunk chunk = chunk(row, column);
+        if (chunk.states == null) {
+            chunk.states = new byte[CHUNK_SIZE * CHUNK_SIZE];
+        } else if (!chunk.ownedStates) {
+            chunk.states = chunk.states.clone();
+        }
+        chunk.ownedStates = true;
+        chunk.states[((row & CHUNK_MASK) << CHUNK_SHIFT) | (column & CHUNK_MASK)] = state;
+        return true;
+    }
+
+    /**
+     * Returns flat indices of mines in generated chunks.
+     *
+     * @return mine positions
+     */
+    @Override
+    int[] getMinePositions() {
+        int count = 0;
+        for (Chunk[] chunkRowChunks : chunks) {
+            if (chunkRowChunks != null) {
+                for (Chunk chunk : chunkRowChunks) {
+                    if (chunk != null) {
+                        count += chunk.minePositions.length;
+                    }
+                }
+            }
+        }
+
+        final int[] positions = new int[count];
+        int i = 0;
+        for (Chunk[] chunkRowChunks : chunks) {
+            if (chunkRowChunks != null) {
+                for (Chunk chunk : chunkRowChunks) {
+                    if (chunk != null) {
+                        System.arraycopy(chunk.minePositions, 0, positions, i, chunk.minePositions.length);
+                        i += chunk.minePositions.length;
+                    }
+                }
+            }
+        }
+        return positions;
+    }
+}
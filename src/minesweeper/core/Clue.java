@@ -5,18 +5,15 @@ package minesweeper.core;
  */
 public class Clue extends Tile {
 
-    /**
-     * Value of the clue.
-     */
-    private final int value;
-
     /**
      * Constructor.
      *
-     * @param value value of the clue
+     * @param field field the tile belongs to
+     * @param row row of the tile
+     * @param column column of the tile
      */
-    public Clue(int value) {
-        this.value = value;
+    Clue(Field field, int row, int column) {
+        super(field, row, column);
     }
 
     /**
@@ -25,7 +22,7 @@ public class Clue extends Tile {
      * @return int clue value
      */
     public int getValue() {
-        return value;
+        return getField().clueAt(getRow(), getColumn());
     }
 
 }
@@ -0,0 +1,102 @@
+package minesweeper.core;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Board which can be played by many threads at once. Mines and clues are
+ * read from an immutable layout board, tile states are packed eight per int
+ * in an atomic array and changed by compare-and-set.
+ */
+final class ConcurrentBoard extends Board {
+
+    /**
+     * Bits of one state code.
+     */
+    private static final int STATE_BITS = 4;
+
+    /**
+     * Mask of one state code.
+     */
+    private static final int STATE_MASK = (1 << STATE_BITS) - 1;
+
+    /**
+     * Board with mines and clues, its states are not used.
+     */
+    private final ArrayBoard layout;
+
+    /**
+     * Tile state codes, eight per int.
+     */
+    private final AtomicIntegerArray states;
+
+    /**
+     * Constructor.
+     *
+     * @param layout generated board with mines and clues
+     */
+    ConcurrentBoard(ArrayBoard layout) {
+        super(layout.getRowCount(), layout.getColumnCount());
+        this.layout = layout;
+        states = new AtomicIntegerArray((size() + 7) >>> 3);
+    }
+
+    @Override
+    ArrayBoard getLayout() {
+        return layout;
+    }
+
+    @Override
+    boolean isMine(int index) {
+        return layout.isMine(index);
+    }
+
+    @Override
+    int getClue(int index) {
+        return layout.getClue(index);
+    }
+
+    @Override
+    byte getState(int index) {
+        return (byte) ((states.get(index >>> 3) >>> ((index & 7) * STATE_BITS)) & STATE_MASK);
+    }
+
+    @Override
+    boolean compareAndSetState(int index, byte expected, byte state) {
+        final int word = index >>> 3;
+        final int shift = (index & 7) * STATE_BITS;
+        while (true) {
+            final int current = states.get(word);
+            if (((current >>> shift) & STATE_MASK) != expected) {
+                return false;
+            }
+            // retried only when another tile of the same word changed meanwhile
+            final int updated = (current & ~(STATE_MASK << shift)) | (state << shift);
+            if (states.compareAndSet(word, current, updated)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    int[] getMinePositions() {
+        return layout.getMinePositions();
+    }
+
+    /**
+     * Returns single threaded board with current states. States changed by
+     * other threads while copying may or may not be seen.
+     *
+     * @return snapshot
+     */
+    @Override
+    ArrayBoard snapshot() {
+        final ArrayBoard copy = layout.snapshot();
+        for (int index = 0; index < size(); index++) {
+            final byte state = getState(index);
+            if (state != CLOSED) {
+                copy.compareAndSetState(index, CLOSED, state);
+            }
+        }
+        return copy;
+    }
+}
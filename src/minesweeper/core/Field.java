@@ -1,17 +1,80 @@
 package minesweeper.core;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * Field represents playing field and game logic.
+ * <p>
+ * Every tile state transition is a compare-and-set on the board, so a shared
+ * field created by {@link #createShared} can be played by many threads at
+ * once: each tile is reported at most once per move, cascades from
+ * different threads never open a tile twice and the game is solved or failed
+ * exactly once. Solved state counts open tiles without mine only, so a
+ * solved game never shows an open mine.
  */
 public class Field implements Serializable{
 
+    /**
+     * Updater of the game state.
+     */
+    private static final AtomicReferenceFieldUpdater<Field, GameState> STATE
+            = AtomicReferenceFieldUpdater.newUpdater(Field.class, GameState.class, "state");
+
+    /**
+     * Updater of the position hash.
+     */
+    private static final AtomicLongFieldUpdater<Field> HASH = AtomicLongFieldUpdater.newUpdater(Field.class, "hash");
+
+    /**
+     * Index of the counter of open tiles without mine, after the state codes.
+     */
+    static final int SAFE_OPEN = Board.WRONG_MARKED + 1;
+
+    /**
+     * Number of tile counters - one per state code and {@link #SAFE_OPEN}.
+     */
+    static final int COUNTER_COUNT = SAFE_OPEN + 1;
+
+    /**
+     * Number of marked tile stripes of a shared field, power of two.
+     */
+    private static final int MARK_STRIPES = 16;
+
+    /**
+     * Number of frontier stripes of a shared field, power of two.
+     */
+    private static final int FRONTIER_STRIPES = 16;
+
+    /**
+     * Binary logarithm of the number of tiles of a frontier stripe page, the
+     * page size of {@link TileSet}.
+     */
+    private static final int FRONTIER_PAGE_SHIFT = 12;
+
+    /**
+     * Visible code of an open clue, the clue value is added.
+     */
+    private static final int OPEN_CLUE = 1;
+
+    /**
+     * Visible code of an open mine.
+     */
+    private static final int OPEN_MINE = 10;
+
+    /**
+     * Visible code of other states, the state code is added.
+     */
+    private static final int OTHER_STATE = 9;
+
     /**
      * Playing field tiles.
      */
-    private final Tile[][] tiles;
+    private final Board board;
 
     /**
      * Field row count. Rows are indexed from 0 to (rowCount - 1).
@@ -28,14 +91,75 @@ public class Field implements Serializable{
      */
     private final int mineCount;
 
+    /**
+     * Seed of the mine layout.
+     */
+    private final long seed;
+
+    /**
+     * True if the field can be played by many threads at once.
+     */
+    private final boolean shared;
+
+    /**
+     * True while mines are not placed yet, they are placed by the first
+     * opened tile.
+     */
+    private boolean pending;
+
+    /**
+     * True if mines are kept off the neighbours of the first opened tile too,
+     * not only off the tile itself.
+     */
+    private final boolean opening;
+
     /**
      * Game state.
      */
-    private GameState state = GameState.PLAYING;
+    private volatile GameState state = GameState.PLAYING;
+
+    /**
+     * Zobrist hash of the visible position: hash of the field dimensions and
+     * mine count xor a random key of each tile which is not closed and what it
+     * shows.
+     */
+    private volatile long hash;
+
     /**
-     * Number of tiles in certain state *
+     * Number of tiles in each state indexed by state code and number of open
+     * tiles without mine at {@link #SAFE_OPEN}. Closed tiles are not counted.
      */
-    private int stateCount;
+    private final AtomicIntegerArray stateCounts = new AtomicIntegerArray(COUNTER_COUNT);
+
+    /**
+     * Flat indices of marked tiles split into stripes by flat index, each
+     * stripe has its own lock. Shared fields have {@link #MARK_STRIPES}
+     * stripes, so threads marking different tiles rarely wait for each other.
+     */
+    private MarkStripe[] markStripes;
+
+    /**
+     * Frontier tiles and active clues split into stripes by pages of flat
+     * indices, each stripe has its own lock. Shared fields have
+     * {@link #FRONTIER_STRIPES} stripes, so cascades in different parts of a
+     * big board rarely wait for each other.
+     */
+    private FrontierStripe[] frontierStripes;
+
+    /**
+     * Tiles changed by the last mutation.
+     */
+    private transient ChangeSet changes;
+
+    /**
+     * Tiles changed by the last mutation of each thread of a shared field.
+     */
+    private transient ThreadLocal<ChangeSet> threadChanges;
+
+    /**
+     * Listener notified about moves, not copied to snapshots.
+     */
+    private transient volatile MoveListener moveListener;
 
     /**
      * Constructor.
@@ -45,88 +169,898 @@ public class Field implements Serializable{
      * @param mineCount mine count
      */
     public Field(int rowCount, int columnCount, int mineCount) {
-        this.rowCount = rowCount;
-        this.columnCount = columnCount;
+        this(rowCount, columnCount, mineCount, new Random().nextLong());
+    }
+
+    /**
+     * Constructor. Mines are placed when the first tile is opened, off the
+     * tile and its neighbours, so the first click starts with an opening.
+     * Fields created with the same dimensions, mine count and seed and opened
+     * on the same tile first have the same mine layout.
+     *
+     * @param rowCount row count
+     * @param columnCount column count
+     * @param mineCount mine count
+     * @param seed seed of the mine layout
+     */
+    public Field(int rowCount, int columnCount, int mineCount, long seed) {
+        this(rowCount, columnCount, mineCount, seed, true);
+    }
+
+    /**
+     * Constructor. Mines are placed when the first tile is opened, so the
+     * first click never hits a mine and a new field costs next to nothing
+     * whatever its size.
+     *
+     * @param rowCount row count
+     * @param columnCount column count
+     * @param mineCount mine count
+     * @param seed seed of the mine layout
+     * @param opening true to keep mines off the neighbours of the first
+     * opened tile too
+     */
+    public Field(int rowCount, int columnCount, int mineCount, long seed, boolean opening) {
+        this(checkedBoard(rowCount, columnCount, mineCount), mineCount, seed, true, opening);
+    }
+
+    /**
+     * Constructor of a field on prepared board.
+     *
+     * @param board board
+     * @param mineCount mine count
+     * @param seed seed of the mine layout, 0 for explicit layouts
+     */
+    Field(Board board, int mineCount, long seed) {
+        this(board, mineCount, seed, false, false);
+    }
+
+    /**
+     * Constructor of a field on prepared board, possibly without mines yet.
+     *
+     * @param board board
+     * @param mineCount mine count
+     * @param seed seed of the mine layout, 0 for explicit layouts
+     * @param pending true if mines are placed by the first opened tile
+     * @param opening true to keep mines off the neighbours of the first
+     * opened tile too
+     */
+    Field(Board board, int mineCount, long seed, boolean pending, boolean opening) {
+        this.rowCount = board.getRowCount();
+        this.columnCount = board.getColumnCount();
         this.mineCount = mineCount;
-        tiles = new Tile[rowCount][columnCount];
-        generate();
-        stateCount = 0;
+        this.seed = seed;
+        this.board = board;
+        this.shared = board instanceof ConcurrentBoard;
+        this.pending = pending;
+        this.opening = opening;
+        this.frontierStripes = new FrontierStripe[shared ? FRONTIER_STRIPES : 1];
+        for (int i = 0; i < frontierStripes.length; i++) {
+            frontierStripes[i] = new FrontierStripe(board.size());
+        }
+        this.markStripes = new MarkStripe[shared ? MARK_STRIPES : 1];
+        for (int i = 0; i < markStripes.length; i++) {
+            markStripes[i] = new MarkStripe();
+        }
+        this.hash = Board.mix(Board.mix(Board.mix(rowCount) + columnCount) + mineCount);
+    }
+
+    /**
+     * Creates field with mines placed at once, as fields were created before
+     * placement was deferred to the first click.
+     *
+     * @param rowCount row count
+     * @param columnCount column count
+     * @param mineCount mine count
+     * @param seed seed of the mine layout
+     * @return new field
+     */
+    static Field createGenerated(int rowCount, int columnCount, int mineCount, long seed) {
+        final ArrayBoard board = checkedBoard(rowCount, columnCount, mineCount);
+        board.generate(mineCount, seed);
+        return new Field(board, mineCount, seed);
+    }
+
+    /**
+     * Returns empty board after checking field dimensions and mine count.
+     *
+     * @param rowCount row count
+     * @param columnCount column count
+     * @param mineCount mine count
+     * @return new board without mines
+     */
+    private static ArrayBoard checkedBoard(int rowCount, int columnCount, int mineCount) {
+        checkSize(rowCount, columnCount, mineCount);
+        return new ArrayBoard(rowCount, columnCount);
+    }
+
+    /**
+     * Creates field without mines on a tile and its neighbours, so that
+     * opening the tile starts with an opening. The layout depends on the tile
+     * too, so the field is treated as an explicit layout with seed 0.
+     *
+     * @param rowCount row count
+     * @param columnCount column count
+     * @param mineCount mine count
+     * @param seed seed of the mine layout
+     * @param row row number of the safe tile
+     * @param column column number of the safe tile
+     * @return new field
+     */
+    public static Field createSafe(int rowCount, int columnCount, int mineCount, long seed, int row, int column) {
+        checkSize(rowCount, columnCount, mineCount);
+        if (row < 0 || row >= rowCount || column < 0 || column >= columnCount) {
+            throw new IllegalArgumentException("Wrong argument row/column!");
+        }
+        final ArrayBoard board = new ArrayBoard(rowCount, columnCount);
+        board.generate(mineCount, seed, board.index(row, column));
+        return new Field(board, mineCount, 0);
+    }
+
+    /**
+     * Creates field which can be played by many threads at once, e.g. by
+     * cooperating players or bots.
+     *
+     * @param rowCount row count
+     * @param columnCount column count
+     * @param mineCount mine count
+     * @param seed seed of the mine layout
+     * @return new shared field
+     */
+    public static Field createShared(int rowCount, int columnCount, int mineCount, long seed) {
+        checkSize(rowCount, columnCount, mineCount);
+        final ArrayBoard layout = new ArrayBoard(rowCount, columnCount);
+        layout.generate(mineCount, seed);
+        return new Field(new ConcurrentBoard(layout), mineCount, seed);
+    }
+
+    /**
+     * Creates endless field. The board is divided into chunks whose mines and
+     * clues are generated from the seed only when a reveal first reaches them,
+     * so memory scales with the explored area, not with the board size.
+     *
+     * @param rowCount row count
+     * @param columnCount column count
+     * @param mineCount mine count
+     * @param seed seed of the mine layout
+     * @return new endless field
+     */
+    public static Field createEndless(int rowCount, int columnCount, int mineCount, long seed) {
+        checkSize(rowCount, columnCount, mineCount);
+        return new Field(new ChunkedBoard(rowCount, columnCount, mineCount, seed), mineCount, seed);
+    }
+
+    /**
+     * Checks field dimensions and mine count.
+     *
+     * @param rowCount row count
+     * @param columnCount column count
+     * @param mineCount mine count
+     */
+    private static void checkSize(int rowCount, int columnCount, int mineCount) {
+        if (rowCount <= 0 || columnCount <= 0 || (long) rowCount * columnCount > Integer.MAX_VALUE
+                || mineCount < 0 || mineCount > rowCount * columnCount) {
+            throw new IllegalArgumentException("Wrong argument row/column/mine count!");
+        }
     }
 
     /**
      * Opens tile at specified indeces.
      *
-     * @param row row number
-     * @param column column number
+     * @param changeSet changes of the move
      */
-    private void openTilesWithMines() {
+    private void openTilesWithMines(ChangeSet changeSet) {
         if (this.getState() == GameState.FAILED) {
-            for (int row = 0; row < rowCount; row++) {
-                for (int column = 0; column < columnCount; column++) {
-                    if (tiles[row][column] instanceof Mine && tiles[row][column].getState() == Tile.State.CLOSED) {
-                        tiles[row][column].setState(Tile.State.OPEN);
-                    }
-                    if (tiles[row][column] instanceof Clue && tiles[row][column].getState() == Tile.State.MARKED) {
-                        tiles[row][column].setState(Tile.State.WRONG_MARKED);
-                    }
+            final int[] marked = getMarkedPositions();
+            for (int i = 0; i < marked.length; i++) {
+                if (!board.isMine(marked[i])) {
+                    transition(changeSet, marked[i], Board.MARKED, Board.WRONG_MARKED);
                 }
             }
+            final int[] minePositions = board.getMinePositions();
+            for (int i = 0; i < minePositions.length; i++) {
+                transition(changeSet, minePositions[i], Board.CLOSED, Board.OPEN);
+            }
         }
         else if (this.getState() == GameState.SOLVED){
-           for (int row = 0; row < rowCount; row++) {
-                for (int column = 0; column < columnCount; column++) {
-                    if (tiles[row][column] instanceof Clue && tiles[row][column].getState() == Tile.State.CLOSED) {
-                        tiles[row][column].setState(Tile.State.OPEN);
+            // solved field has every clue open already
+            final int[] minePositions = board.getMinePositions();
+            for (int i = 0; i < minePositions.length; i++) {
+                transition(changeSet, minePositions[i], Board.CLOSED, Board.MARKED);
+            }
+        }
+    }
+
+    /**
+     * Opens tile at specified indeces.
+     *
+     * @param row row number
+     * @param column column number
+     * @return tiles changed by opening, valid until the next mutation
+     */
+    public ChangeSet openTile(int row, int column) {
+        final ChangeSet changeSet = beginChanges();
+        final int index = board.index(row, column);
+        if (state == GameState.PLAYING && board.getState(index) == Board.CLOSED) {
+            if (pending) {
+                generate(index);
+            }
+            finishMove(changeSet, openClosedTile(changeSet, index));
+        }
+        return endMove(changeSet, Move.OPEN, row, column);
+    }
+
+    /**
+     * Opens all closed neighbours of an open clue if the number of marked
+     * neighbours equals the clue value (chord). Neighbours are opened in one
+     * pass, solved state is checked once and all changes are reported in one
+     * change set.
+     *
+     * @param row row number
+     * @param column column number
+     * @return tiles changed by the chord, valid until the next mutation
+     */
+    public ChangeSet chord(int row, int column) {
+        final ChangeSet changeSet = beginChanges();
+        final int index = board.index(row, column);
+        if (state == GameState.PLAYING && board.getState(index) == Board.OPEN && !board.isMine(index)) {
+            final int firstRow = Math.max(row - 1, 0);
+            final int lastRow = Math.min(row + 1, rowCount - 1);
+            final int firstColumn = Math.max(column - 1, 0);
+            final int lastColumn = Math.min(column + 1, columnCount - 1);
+
+            int markedNeighbours = 0;
+            for (int actRow = firstRow; actRow <= lastRow; actRow++) {
+                for (int actColumn = firstColumn; actColumn <= lastColumn; actColumn++) {
+                    if (board.getState(board.index(actRow, actColumn)) == Board.MARKED) {
+                        markedNeighbours++;
                     }
-                    if (tiles[row][column] instanceof Mine && tiles[row][column].getState() == Tile.State.CLOSED) {
-                        tiles[row][column].setState(Tile.State.MARKED);
+                }
+            }
+
+            if (markedNeighbours == board.getClue(index)) {
+                boolean mineOpened = false;
+                for (int actRow = firstRow; actRow <= lastRow; actRow++) {
+                    for (int actColumn = firstColumn; actColumn <= lastColumn; actColumn++) {
+                        final int actIndex = board.index(actRow, actColumn);
+                        if (board.getState(actIndex) == Board.CLOSED) {
+                            mineOpened |= openClosedTile(changeSet, actIndex);
+                        }
                     }
                 }
-            } 
+                finishMove(changeSet, mineOpened);
+            }
         }
+        return endMove(changeSet, Move.CHORD, row, column);
     }
 
     /**
-     * Opens tile at specified indeces.
+     * Opens closed tile and the zero region around it.
+     *
+     * @param changeSet changes of the move
+     * @param index flat index
+     * @return true if the tile contains mine
+     */
+    private boolean openClosedTile(ChangeSet changeSet, int index) {
+        if (!transition(changeSet, index, Board.CLOSED, Board.OPEN)) {
+            return false;
+        }
+        if (board.isMine(index)) {
+            return true;
+        }
+        if (board.getClue(index) == 0) {
+            final ArrayBoard layout = shared ? null : board.getLayout();
+            final int opening = layout == null ? -1 : layout.getOpening(index);
+            // marks stop the flood fill inside an opening, so only unmarked fields open it whole
+            if (opening >= 0 && stateCounts.get(Board.MARKED) == 0 && stateCounts.get(Board.QUEST) == 0) {
+                openOpening(changeSet, layout, opening);
+            } else {
+                this.openAdjacentTiles(changeSet, index);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Opens all closed tiles of an opening labelled when mines were placed,
+     * no flood fill is needed.
+     *
+     * @param changeSet changes of the move
+     * @param layout board with labelled openings
+     * @param opening opening number
+     */
+    private void openOpening(ChangeSet changeSet, ArrayBoard layout, int opening) {
+        final int[] tiles = layout.getOpeningTiles();
+        final int end = layout.getOpeningStarts()[opening + 1];
+        for (int i = layout.getOpeningStarts()[opening]; i < end; i++) {
+            transition(changeSet, tiles[i], Board.CLOSED, Board.OPEN);
+        }
+    }
+
+    /**
+     * Updates game state after tiles were opened. Only the move which changes
+     * the game state reveals the mines. A move which opened a mine never
+     * solves the game; if another thread solved it meanwhile, the move comes
+     * after the solving one and its mines are shown marked like the others.
+     *
+     * @param changeSet changes of the move
+     * @param mineOpened true if a mine was opened
+     */
+    private void finishMove(ChangeSet changeSet, boolean mineOpened) {
+        commitCounts(changeSet);
+        if (mineOpened) {
+            if (STATE.compareAndSet(this, GameState.PLAYING, GameState.FAILED)) {
+                openTilesWithMines(changeSet);
+            } else if (state == GameState.SOLVED) {
+                markOpenedMines(changeSet);
+            }
+        } else if (isSolved() && STATE.compareAndSet(this, GameState.PLAYING, GameState.SOLVED)) {
+            openTilesWithMines(changeSet);
+        }
+        updateFrontier(changeSet);
+    }
+
+    /**
+     * Marks mines opened by a move which came after the game was solved.
+     *
+     * @param changeSet changes of the move
+     */
+    private void markOpenedMines(ChangeSet changeSet) {
+        final int size = changeSet.size();
+        for (int i = 0; i < size; i++) {
+            final int index = changeSet.getIndex(i);
+            if (board.isMine(index)) {
+                transition(changeSet, index, Board.OPEN, Board.MARKED, false);
+            }
+        }
+        commitCounts(changeSet);
+    }
+
+    /**
+     * Marks tile at specified indeces.
      *
      * @param row row number
      * @param column column number
+     * @return tiles changed by marking, valid until the next mutation
      */
-    public void openTile(int row, int column) {
-        final Tile tile = tiles[row][column];
-        if (tile.getState() == Tile.State.CLOSED) {
-            tile.setState(Tile.State.OPEN);
-            if (tile instanceof Mine) {
-                state = GameState.FAILED;
-                openTilesWithMines();
-                return;
+    public ChangeSet markTile(int row, int column) {
+        final ChangeSet changeSet = beginChanges();
+        final int index = board.index(row, column);
+
+        if (state == GameState.PLAYING) {
+            final byte current = board.getState(index);
+            byte next = current;
+            if (current == Board.CLOSED) {
+                next = Board.MARKED;
+            } else if (current == Board.MARKED) {
+                next = Board.QUEST;
+            } else if (current == Board.QUEST) {
+                next = Board.CLOSED;
             }
-            if (tile instanceof Clue && this.countAdjacentMines(row, column) == 0) {
-                this.openAdjacentTiles(row, column);
+            if (next != current && transition(changeSet, index, current, next) && state != GameState.PLAYING) {
+                // another thread ended the game meanwhile, the mark comes after the end and has no effect
+                transition(changeSet, index, next, current, false);
+                revealTile(changeSet, index);
             }
+        }
+        return endMove(changeSet, Move.MARK, row, column);
+    }
 
-            if (isSolved()) {
-                state = GameState.SOLVED;
-                openTilesWithMines();
+    /**
+     * Shows tile as the end of the game shows it, for tiles changed while the
+     * game ended.
+     *
+     * @param changeSet changes of the move
+     * @param index flat index
+     */
+    private void revealTile(ChangeSet changeSet, int index) {
+        if (state == GameState.FAILED) {
+            if (board.isMine(index)) {
+                transition(changeSet, index, Board.CLOSED, Board.OPEN, false);
+            } else {
+                transition(changeSet, index, Board.MARKED, Board.WRONG_MARKED, false);
             }
+        } else if (state == GameState.SOLVED && board.isMine(index)) {
+            transition(changeSet, index, Board.CLOSED, Board.MARKED, false);
         }
     }
 
     /**
-     * Marks tile at specified indeces.
+     * Starts recording tiles changed by a mutation. Each thread of a shared
+     * field records into its own change set.
+     *
+     * @return empty change set
+     */
+    private ChangeSet beginChanges() {
+        final ChangeSet changeSet;
+        if (shared) {
+            changeSet = threadChanges().get();
+        } else {
+            if (changes == null) {
+                changes = new ChangeSet(columnCount);
+            }
+            changeSet = changes;
+        }
+        changeSet.clear();
+        return changeSet;
+    }
+
+    /**
+     * Finishes recording tiles changed by a move and notifies the move
+     * listener if the move changed anything.
      *
+     * @param changeSet changes of the move
+     * @param move move
      * @param row row number
      * @param column column number
+     * @return the change set
      */
-    public void markTile(int row, int column) {
-        final Tile tile = tiles[row][column];
+    private ChangeSet endMove(ChangeSet changeSet, Move move, int row, int column) {
+        commitCounts(changeSet);
+        changeSet.setState(state);
+        final MoveListener listener = moveListener;
+        if (listener != null && changeSet.size() > 0) {
+            listener.movePlayed(this, move, row, column);
+        }
+        return changeSet;
+    }
+
+    /**
+     * Sets listener notified about moves which changed some tiles.
+     *
+     * @param moveListener move listener, null to remove it
+     */
+    public void setMoveListener(MoveListener moveListener) {
+        this.moveListener = moveListener;
+    }
 
-        if (tile.getState() == Tile.State.CLOSED) {
-            tile.setState(Tile.State.MARKED);
-        } else if (tile.getState() == Tile.State.MARKED) {
-            tile.setState(Tile.State.QUEST);
-        } else if (tile.getState() == Tile.State.QUEST) {
-            tile.setState(Tile.State.CLOSED);
+    /**
+     * Returns per thread change sets, creates them if needed.
+     *
+     * @return per thread change sets
+     */
+    private synchronized ThreadLocal<ChangeSet> threadChanges() {
+        if (threadChanges == null) {
+            threadChanges = new ThreadLocal<ChangeSet>() {
+                @Override
+                protected ChangeSet initialValue() {
+                    return new ChangeSet(columnCount);
+                }
+            };
+        }
+        return threadChanges;
+    }
+
+    /**
+     * Changes state of tile at flat index if it is in the expected state,
+     * keeps marked positions up to date and records the change. Every tile
+     * state transition goes through here.
+     *
+     * @param changeSet changes of the move
+     * @param index flat index
+     * @param expected expected state code
+     * @param newState new state code
+     * @return true if the state was changed
+     */
+    private boolean transition(ChangeSet changeSet, int index, byte expected, byte newState) {
+        return transition(changeSet, index, expected, newState, true);
+    }
+
+    /**
+     * Changes state of tile at flat index if it is in the expected state,
+     * optionally without recording the tile again.
+     *
+     * @param changeSet changes of the move
+     * @param index flat index
+     * @param expected expected state code
+     * @param newState new state code
+     * @param record false if the tile is already recorded in the change set
+     * @return true if the state was changed
+     */
+    private boolean transition(ChangeSet changeSet, int index, byte expected, byte newState, boolean record) {
+        if (!board.compareAndSetState(index, expected, newState)) {
+            return false;
+        }
+        changeSet.countDeltas[expected]--;
+        changeSet.countDeltas[newState]++;
+        if (!board.isMine(index)) {
+            if (expected == Board.OPEN) {
+                changeSet.countDeltas[SAFE_OPEN]--;
+            } else if (newState == Board.OPEN) {
+                changeSet.countDeltas[SAFE_OPEN]++;
+            }
+        }
+        changeSet.hashDelta ^= tileKey(index, expected) ^ tileKey(index, newState);
+        if (expected == Board.MARKED) {
+            removeMarkedPosition(index);
+        } else if (newState == Board.MARKED) {
+            addMarkedPosition(index);
+        }
+        if (record) {
+            changeSet.add(index);
+        }
+        return true;
+    }
+
+    /**
+     * Updates frontier and active clues after tiles of a move were opened.
+     * The sets are updated once per move, so tiles of a cascade do not join
+     * and leave them one by one. Memberships are derived from the current
+     * tile states under the lock of the stripe of the tile, so on a shared
+     * field the last update around a tile leaves it right whatever the order
+     * of the moves.
+     *
+     * @param changeSet changes of the move
+     */
+    private void updateFrontier(ChangeSet changeSet) {
+        for (int i = 0; i < changeSet.size(); i++) {
+            final int index = changeSet.getIndex(i);
+            if (board.getState(index) == Board.OPEN && leaveFrontier(index)) {
+                // only clues around former frontier tiles can lose their last unopened neighbour
+                deactivateAround(index);
+            }
+        }
+        // the cascade opened all closed neighbours of zero clues, so without marks they touch no unopened tile
+        final boolean unmarked = !shared && stateCounts.get(Board.MARKED) == 0 && stateCounts.get(Board.QUEST) == 0;
+        for (int i = 0; i < changeSet.size(); i++) {
+            final int index = changeSet.getIndex(i);
+            if (board.getState(index) == Board.OPEN && !(unmarked && board.getClue(index) == 0 && !board.isMine(index))) {
+                updateFrontier(index);
+            }
+        }
+    }
+
+    /**
+     * Returns stripe of frontier tiles and active clues of a tile.
+     *
+     * @param index flat index
+     * @return stripe
+     */
+    private FrontierStripe frontierStripe(int index) {
+        return frontierStripes[(index >>> FRONTIER_PAGE_SHIFT) & (frontierStripes.length - 1)];
+    }
+
+    /**
+     * Removes an open tile from the frontier.
+     *
+     * @param index flat index of the open tile
+     * @return true if the tile was in the frontier
+     */
+    private boolean leaveFrontier(int index) {
+        final FrontierStripe stripe = frontierStripe(index);
+        if (!shared) {
+            return stripe.frontier.remove(index);
+        }
+        synchronized (stripe) {
+            return stripe.frontier.remove(index);
+        }
+    }
+
+    /**
+     * Adds a neighbour of an open clue to the frontier unless it is open.
+     *
+     * @param index flat index
+     */
+    private void joinFrontier(int index) {
+        final FrontierStripe stripe = frontierStripe(index);
+        if (!shared) {
+            stripe.frontier.add(index);
+            return;
+        }
+        synchronized (stripe) {
+            if (board.getState(index) != Board.OPEN) {
+                stripe.frontier.add(index);
+            }
+        }
+    }
+
+    /**
+     * Removes active clues around a tile which have no unopened neighbour.
+     *
+     * @param index flat index
+     */
+    private void deactivateAround(int index) {
+        final int row = index / columnCount;
+        final int column = index % columnCount;
+        for (int actRow = Math.max(row - 1, 0); actRow <= Math.min(row + 1, rowCount - 1); actRow++) {
+            for (int actColumn = Math.max(column - 1, 0); actColumn <= Math.min(column + 1, columnCount - 1); actColumn++) {
+                final int actIndex = board.index(actRow, actColumn);
+                final FrontierStripe stripe = frontierStripe(actIndex);
+                if (!shared) {
+                    if (stripe.activeClues.contains(actIndex) && !touchesUnopened(actIndex)) {
+                        stripe.activeClues.remove(actIndex);
+                    }
+                    continue;
+                }
+                synchronized (stripe) {
+                    if (stripe.activeClues.contains(actIndex) && !touchesUnopened(actIndex)) {
+                        stripe.activeClues.remove(actIndex);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds neighbours of an open tile which are not open to the frontier and
+     * adds the tile to active clues if it is a clue with such neighbours.
+     *
+     * @param index flat index of the open tile
+     */
+    private void updateFrontier(int index) {
+        final boolean clue = !board.isMine(index);
+        final int row = index / columnCount;
+        final int column = index % columnCount;
+        boolean active = false;
+        for (int actRow = Math.max(row - 1, 0); actRow <= Math.min(row + 1, rowCount - 1); actRow++) {
+            for (int actColumn = Math.max(column - 1, 0); actColumn <= Math.min(column + 1, columnCount - 1); actColumn++) {
+                final int actIndex = board.index(actRow, actColumn);
+                if (board.getState(actIndex) != Board.OPEN) {
+                    if (clue) {
+                        joinFrontier(actIndex);
+                    }
+                    active = true;
+                }
+            }
+        }
+        if (!active || !clue) {
+            return;
+        }
+        final FrontierStripe stripe = frontierStripe(index);
+        if (!shared) {
+            stripe.activeClues.add(index);
+            return;
+        }
+        synchronized (stripe) {
+            // a neighbour may have been opened meanwhile, its move then missed the clue
+            if (touchesUnopened(index)) {
+                stripe.activeClues.add(index);
+            }
+        }
+    }
+
+    /**
+     * Returns true if a tile has a neighbour which is not open.
+     *
+     * @param index flat index
+     * @return true if some neighbour is not open
+     */
+    private boolean touchesUnopened(int index) {
+        final int row = index / columnCount;
+        final int column = index % columnCount;
+        for (int actRow = Math.max(row - 1, 0); actRow <= Math.min(row + 1, rowCount - 1); actRow++) {
+            for (int actColumn = Math.max(column - 1, 0); actColumn <= Math.min(column + 1, columnCount - 1); actColumn++) {
+                if (board.getState(board.index(actRow, actColumn)) != Board.OPEN) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns tiles which are not open and touch an open clue, kept up to date
+     * on every opened tile. The set of a single threaded field is live, the
+     * stripes of a shared field and its snapshots are merged into a new set.
+     * Either must not be read while a shared field is played.
+     *
+     * @return frontier tiles
+     */
+    public TileSet getFrontier() {
+        if (frontierStripes.length == 1) {
+            return frontierStripes[0].frontier;
+        }
+        final TileSet frontier = new TileSet(board.size());
+        for (FrontierStripe stripe : frontierStripes) {
+            stripe.frontier.addTo(frontier);
+        }
+        return frontier;
+    }
+
+    /**
+     * Returns open clues which touch a tile which is not open, kept up to date
+     * on every opened tile. The set of a single threaded field is live, the
+     * stripes of a shared field and its snapshots are merged into a new set.
+     * Either must not be read while a shared field is played.
+     *
+     * @return active clues
+     */
+    public TileSet getActiveClues() {
+        if (frontierStripes.length == 1) {
+            return frontierStripes[0].activeClues;
+        }
+        final TileSet activeClues = new TileSet(board.size());
+        for (FrontierStripe stripe : frontierStripes) {
+            stripe.activeClues.addTo(activeClues);
+        }
+        return activeClues;
+    }
+
+    /**
+     * Adds state counter changes of the move to the field counters.
+     *
+     * @param changeSet changes of the move
+     */
+    private void commitCounts(ChangeSet changeSet) {
+        final int[] deltas = changeSet.countDeltas;
+        for (int code = Board.OPEN; code < deltas.length; code++) {
+            if (deltas[code] != 0) {
+                stateCounts.addAndGet(code, deltas[code]);
+                deltas[code] = 0;
+            }
+        }
+        if (changeSet.hashDelta != 0) {
+            long current;
+            do {
+                current = hash;
+            } while (!HASH.compareAndSet(this, current, current ^ changeSet.hashDelta));
+            changeSet.hashDelta = 0;
+        }
+    }
+
+    /**
+     * Returns random key of a tile showing what a tile state shows. Keys are
+     * derived from the flat index, so no table of board size is needed.
+     *
+     * @param index flat index
+     * @param code state code
+     * @return key, 0 for closed tiles
+     */
+    private long tileKey(int index, byte code) {
+        if (code == Board.CLOSED) {
+            return 0;
+        }
+        final int visible;
+        if (code != Board.OPEN) {
+            visible = OTHER_STATE + code;
+        } else if (board.isMine(index)) {
+            visible = OPEN_MINE;
+        } else {
+            visible = OPEN_CLUE + board.getClue(index);
+        }
+        return Board.mix((long) index << 4 | visible);
+    }
+
+    /**
+     * Returns Zobrist hash of the visible position, updated with every tile
+     * change. Fields of the same dimensions and mine count showing the same
+     * tile states and clues have the same hash, so it can key caches of
+     * analysis results.
+     *
+     * @return position hash
+     */
+    public long getPositionHash() {
+        return hash;
+    }
+
+    /**
+     * Adds tile to marked positions.
+     *
+     * @param index flat index
+     */
+    private void addMarkedPosition(int index) {
+        markStripes[index & (markStripes.length - 1)].add(index);
+    }
+
+    /**
+     * Removes tile from marked positions.
+     *
+     * @param index flat index
+     */
+    private void removeMarkedPosition(int index) {
+        markStripes[index & (markStripes.length - 1)].remove(index);
+    }
+
+    /**
+     * Returns copy of marked positions. Stripes are copied one by one, so on
+     * a shared field marks changed meanwhile may be missed.
+     *
+     * @return flat indices of marked tiles
+     */
+    private int[] getMarkedPositions() {
+        int[] positions = new int[0];
+        for (MarkStripe stripe : markStripes) {
+            positions = stripe.appendTo(positions);
+        }
+        return positions;
+    }
+
+    /**
+     * Flat indices of marked tiles of one stripe.
+     */
+    private static final class MarkStripe implements Serializable {
+
+        /**
+         * Flat indices of marked tiles, first count entries are valid.
+         */
+        private int[] positions = new int[16];
+
+        /**
+         * Number of marked tiles.
+         */
+        private int count;
+
+        /**
+         * Adds tile.
+         *
+         * @param index flat index
+         */
+        synchronized void add(int index) {
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+            }
+            positions[count++] = index;
+        }
+
+        /**
+         * Removes tile.
+         *
+         * @param index flat index
+         */
+        synchronized void remove(int index) {
+            for (int i = count - 1; i >= 0; i--) {
+                if (positions[i] == index) {
+                    positions[i] = positions[--count];
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Returns array with tiles of the stripe appended.
+         *
+         * @param array flat indices to append to
+         * @return new array
+         */
+        synchronized int[] appendTo(int[] array) {
+            final int[] result = Arrays.copyOf(array, array.length + count);
+            System.arraycopy(positions, 0, result, array.length, count);
+            return result;
+        }
+    }
+
+    /**
+     * Frontier tiles and active clues of one stripe.
+     */
+    private static final class FrontierStripe implements Serializable {
+
+        /**
+         * Tiles which are not open and touch an open clue.
+         */
+        private final TileSet frontier;
+
+        /**
+         * Open clues which touch a tile which is not open.
+         */
+        private final TileSet activeClues;
+
+        /**
+         * Constructor of an empty stripe.
+         *
+         * @param tileCount number of tiles of the board
+         */
+        FrontierStripe(int tileCount) {
+            this.frontier = new TileSet(tileCount);
+            this.activeClues = new TileSet(tileCount);
+        }
+
+        /**
+         * Constructor.
+         *
+         * @param frontier frontier tiles
+         * @param activeClues active clues
+         */
+        private FrontierStripe(TileSet frontier, TileSet activeClues) {
+            this.frontier = frontier;
+            this.activeClues = activeClues;
+        }
+
+        /**
+         * Returns independent copy of the stripe.
+         *
+         * @return copy
+         */
+        synchronized FrontierStripe copy() {
+            return new FrontierStripe(frontier.copy(), activeClues.copy());
         }
     }
 
@@ -157,6 +1091,42 @@ public class Field implements Serializable{
         return mineCount;
     }
 
+    /**
+     * Get seed of the mine layout.
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Get number of openings - connected regions of tiles without adjacent
+     * mines, each opened by a single click.
+     *
+     * @return opening count or -1 if mines are not placed yet or the field is
+     * endless
+     */
+    public int getOpeningCount() {
+        final ArrayBoard layout = board.getLayout();
+        return layout == null ? -1 : layout.getOpeningCount();
+    }
+
+    /**
+     * Get Bechtel's board benchmark value (3BV) - the least number of clicks
+     * which solve the field without marks: one per opening and one per clue
+     * not bordering any opening.
+     *
+     * @return 3BV or -1 if mines are not placed yet or the field is endless
+     */
+    public int getBoardValue() {
+        final ArrayBoard layout = board.getLayout();
+        if (layout == null || layout.getOpeningCount() < 0) {
+            return -1;
+        }
+        return layout.getOpeningCount() + layout.getIsolatedClueCount();
+    }
+
     /**
      * Get tile state.
      *
@@ -167,7 +1137,115 @@ public class Field implements Serializable{
     }
 
     /**
-     * Get field tile at specific location.
+     * Returns independent copy of the field, e.g. for exploring hypothetical
+     * moves. Mines and clues are shared and tile states are copied lazily in
+     * pages when either field changes them, so snapshots are cheap even for
+     * big fields. Snapshot of a shared field is a single threaded field and
+     * may miss moves played while it is taken.
+     *
+     * @return copy of the field
+     */
+    public Field snapshot() {
+        final Field copy = new Field(board.snapshot(), mineCount, seed, pending, opening);
+        copy.state = state;
+        copy.hash = hash;
+        for (int code = Board.OPEN; code < COUNTER_COUNT; code++) {
+            copy.stateCounts.set(code, stateCounts.get(code));
+        }
+        for (int index : getMarkedPositions()) {
+            copy.addMarkedPosition(index);
+        }
+        copy.frontierStripes = new FrontierStripe[frontierStripes.length];
+        for (int i = 0; i < frontierStripes.length; i++) {
+            copy.frontierStripes[i] = frontierStripes[i].copy();
+        }
+        return copy;
+    }
+
+    /**
+     * Restores tile states and game state of a loaded field with all tiles
+     * closed.
+     *
+     * @param codes state code of each tile
+     * @param gameState game state
+     * @throws IllegalArgumentException if a state code is not valid
+     */
+    void restore(byte[] codes, GameState gameState) {
+        final int[] counts = new int[COUNTER_COUNT];
+        for (int index = 0; index < codes.length; index++) {
+            final byte code = codes[index];
+            if (code < Board.CLOSED || code > Board.WRONG_MARKED) {
+                throw new IllegalArgumentException("Wrong tile state code!");
+            }
+            if (code != Board.CLOSED) {
+                board.compareAndSetState(index, Board.CLOSED, code);
+                hash ^= tileKey(index, code);
+                counts[code]++;
+                if (code == Board.OPEN && !board.isMine(index)) {
+                    counts[SAFE_OPEN]++;
+                }
+                if (code == Board.MARKED) {
+                    addMarkedPosition(index);
+                }
+            }
+        }
+        for (int code = Board.OPEN; code < COUNTER_COUNT; code++) {
+            stateCounts.set(code, counts[code]);
+        }
+        for (int index = 0; index < codes.length; index++) {
+            if (codes[index] == Board.OPEN) {
+                updateFrontier(index);
+            }
+        }
+        state = gameState;
+    }
+
+    /**
+     * Returns board of the field.
+     *
+     * @return board
+     */
+    Board getBoard() {
+        return board;
+    }
+
+    /**
+     * Returns true if tile at specific location contains mine.
+     *
+     * @param row tile row
+     * @param column tile column
+     * @return true if tile contains mine
+     */
+    public boolean isMine(int row, int column) {
+        return board.isMine(board.index(row, column));
+    }
+
+    /**
+     * Returns clue value of tile at specific location, i.e. number of adjacent
+     * mines. Mine tiles do not count themselves.
+     *
+     * @param row tile row
+     * @param column tile column
+     * @return clue value
+     */
+    public int clueAt(int row, int column) {
+        return board.getClue(board.index(row, column));
+    }
+
+    /**
+     * Returns state of tile at specific location.
+     *
+     * @param row tile row
+     * @param column tile column
+     * @return tile state
+     */
+    public Tile.State stateAt(int row, int column) {
+        return Board.toState(board.getState(board.index(row, column)));
+    }
+
+    /**
+     * Get field tile at specific location. Returned tile is a view backed by
+     * the field.
      *
      * @param row tile row
      * @param column tile column
@@ -175,151 +1253,130 @@ public class Field implements Serializable{
      */
     public Tile getTile(int row, int column) {
         if (row >= 0 && row < this.getRowCount() && column >= 0 && column < this.getColumnCount()) {
-            return tiles[row][column];
+            if (isMine(row, column)) {
+                return new Mine(this, row, column);
+            }
+            return new Clue(this, row, column);
         } else {
             throw new IllegalArgumentException("Wrong argument row/column!");
         }
     }
 
     /**
+     * Returns all field tiles as views backed by the field.
      *
      * @return Tile specific field tile
      */
     public Tile[][] getTiles() {
+        Tile[][] tiles = new Tile[rowCount][columnCount];
+        for (int row = 0; row < rowCount; row++) {
+            for (int column = 0; column < columnCount; column++) {
+                tiles[row][column] = getTile(row, column);
+            }
+        }
         return tiles;
     }
 
     /**
-     * Generates playing field.
+     * Places mines off the first opened tile.
+     *
+     * @param index flat index of the first opened tile
      */
-    private void generate() {
-        generateMines();
-        fillWithClues();
+    private void generate(int index) {
+        final ArrayBoard layout = (ArrayBoard) board;
+        if (opening) {
+            layout.generate(mineCount, seed, index);
+        } else {
+            layout.generate(mineCount, seed, index, false);
+        }
+        pending = false;
     }
 
     /**
-     * Generate random mines.
+     * Returns true while mines are not placed yet.
+     *
+     * @return true before the first tile is opened
      */
-    private void generateMines() {
-        Random random = new Random();
-        for (int i = 0; i < mineCount; i++) {
-            int ranRow = random.nextInt(rowCount);
-            int ranColumn = random.nextInt(columnCount);
-            if (tiles[ranRow][ranColumn] == null) {
-                tiles[ranRow][ranColumn] = new Mine();
-            }
-            else
-                i--;
-        }
-
+    boolean isPending() {
+        return pending;
     }
 
     /**
-     * Fill with clues - field tile which not contain mine just only number of
-     * adjecent mines.
+     * Returns true if mines are kept off the neighbours of the first opened
+     * tile too.
+     *
+     * @return true if the first click starts with an opening
      */
-    private void fillWithClues() {
-        for (int row = 0; row < rowCount; row++) {
-            for (int column = 0; column < columnCount; column++) {
-                if (!(tiles[row][column] instanceof Mine)) {
-                    tiles[row][column] = new Clue(countAdjacentMines(row, column));
-                }
-            }
-        }
+    boolean isOpening() {
+        return opening;
     }
 
     /**
-     * Returns true if game is solved, false otherwise.
+     * Returns true if every tile without mine is open. Open mines are not
+     * counted, so a mine opened by another thread can not solve the game.
      *
      * @return true if game is solved, false otherwise
      */
     private boolean isSolved() {
-
-        if (mineCount == rowCount * columnCount - this.getNumberOfOpen(Tile.State.OPEN)) {
-            return true;
-        }
-
-        return false;
+        return stateCounts.get(SAFE_OPEN) == rowCount * columnCount - mineCount;
     }
 
     /**
      * Returns number of adjacent mines for a tile at specified position in the
-     * field.
+     * field. Value is precomputed when the field is generated.
      *
      * @param row row number.
      * @param column column number.
      * @return number of adjacent mines.
      */
     public int countAdjacentMines(int row, int column) {
-        int count = 0;
-
-        for (int rowOffset = -1; rowOffset <= 1; rowOffset++) {
-            int actRow = row + rowOffset;
-            if (actRow >= 0 && actRow < rowCount) {
-                for (int columnOffset = -1; columnOffset <= 1; columnOffset++) {
-                    int actColumn = column + columnOffset;
-                    if (actColumn >= 0 && actColumn < columnCount) {
-                        if (tiles[actRow][actColumn] instanceof Mine) {
-                            count++;
-                        }
-                    }
-                }
-            }
-        }
-
-        return count;
+        return clueAt(row, column);
     }
 
     /**
-     * Returns number of tiles in certain state.
+     * Open adjacent tile if tile has no clue. The whole zero region is opened
+     * iteratively with an explicit stack of flat indices, every tile is pushed
+     * at most once.
      *
-     * @return int
-     * @param state
+     * @param changeSet changes of the move
+     * @param index flat index of tile
      */
-    private int getNumberOfOpen(Tile.State state) {
-
-        stateCount = 0;
-
-        for (int row = 0; row < rowCount; row++) {
-            for (int col = 0; col < columnCount; col++) {
-                if (getTile(row, col).getState() == state) {
-                    stateCount++;
-                }
-            }
+    private void openAdjacentTiles(ChangeSet changeSet, int index) {
+        int[] stack = changeSet.revealStack;
+        if (stack == null) {
+            stack = new int[64];
         }
+        int size = 0;
+        stack[size++] = index;
 
-        return stateCount;
-    }
-
-    /**
-     * Open adjacent tile if tile has no clue.
-     *
-     * @param row row of tile
-     * @param column column of tile
-     */
-    private void openAdjacentTiles(int row, int column) {
-        for (int rowOffset = -1; rowOffset <= 1; rowOffset++) {
-            int actRow = row + rowOffset;
-            for (int columnOffset = -1; columnOffset <= 1; columnOffset++) {
-                int actColumn = column + columnOffset;
-                if (actRow >= 0 && actRow < getRowCount() && actColumn >= 0 && actColumn < getColumnCount()) {
-                    if (tiles[actRow][actColumn] instanceof Clue
-                            && tiles[actRow][actColumn].getState() == Tile.State.CLOSED) {
-
-                        tiles[actRow][actColumn].setState(Tile.State.OPEN);
-                        try {
-                            if (this.countAdjacentMines(actRow, actColumn) == 0) {
-                                this.openAdjacentTiles(actRow, actColumn);
+        while (size > 0) {
+            final int current = stack[--size];
+            final int currentRow = current / columnCount;
+            final int currentColumn = current - currentRow * columnCount;
 
+            for (int rowOffset = -1; rowOffset <= 1; rowOffset++) {
+                int actRow = currentRow + rowOffset;
+                if (actRow < 0 || actRow >= rowCount) {
+                    continue;
+                }
+                for (int columnOffset = -1; columnOffset <= 1; columnOffset++) {
+                    int actColumn = currentColumn + columnOffset;
+                    if (actColumn < 0 || actColumn >= columnCount) {
+                        continue;
+                    }
+                    final int actIndex = board.index(actRow, actColumn);
+                    if (!board.isMine(actIndex) && transition(changeSet, actIndex, Board.CLOSED, Board.OPEN)) {
+                        if (board.getClue(actIndex) == 0) {
+                            if (size == stack.length) {
+                                stack = Arrays.copyOf(stack, Math.min(stack.length * 2, board.size()));
                             }
-                        } catch (java.lang.StackOverflowError e) {
-                            System.out.println(e);
+                            stack[size++] = actIndex;
                         }
-
                     }
                 }
             }
         }
+        changeSet.revealStack = stack;
     }
 
     /**
@@ -328,6 +1385,28 @@ public class Field implements Serializable{
      * @return number of remaining mines
      */
     public int getRemainingMineCount() {
-        return mineCount - getNumberOfOpen(Tile.State.MARKED);
+        return mineCount - stateCounts.get(Board.MARKED);
+    }
+
+    /**
+     * Returns number of tiles in certain state in constant time.
+     *
+     * @param state tile state
+     * @return number of tiles in the state
+     */
+    public int getTileCount(Tile.State state) {
+        switch (state) {
+            case OPEN:
+                return stateCounts.get(Board.OPEN);
+            case MARKED:
+                return stateCounts.get(Board.MARKED);
+            case QUEST:
+                return stateCounts.get(Board.QUEST);
+            case WRONG_MARKED:
+                return stateCounts.get(Board.WRONG_MARKED);
+            default:
+                return rowCount * columnCount - stateCounts.get(Board.OPEN) - stateCounts.get(Board.MARKED)
+                        - stateCounts.get(Board.QUEST) - stateCounts.get(Board.WRONG_MARKED);
+        }
     }
 }
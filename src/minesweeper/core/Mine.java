@@ -4,4 +4,15 @@ package minesweeper.core;
  * Mine tile.
  */
 public class Mine extends Tile {
+
+    /**
+     * Constructor.
+     *
+     * @param field field the tile belongs to
+     * @param row row of the tile
+     * @param column column of the tile
+     */
+    Mine(Field field, int row, int column) {
+        super(field, row, column);
+    }
 }
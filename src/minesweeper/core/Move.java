@@ -0,0 +1,39 @@
+package minesweeper.core;
+
+/**
+ * Player move on a field.
+ */
+public enum Move {
+
+    /**
+     * Opening of a tile.
+     */
+    OPEN,
+    /**
+     * Marking of a tile.
+     */
+    MARK,
+    /**
+     * Opening around a clue.
+     */
+    CHORD;
+
+    /**
+     * Plays this move on a field.
+     *
+     * @param field field
+     * @param row row number
+     * @param column column number
+     * @return tiles changed by the move
+     */
+    public ChangeSet play(Field field, int row, int column) {
+        switch (this) {
+            case OPEN:
+                return field.openTile(row, column);
+            case MARK:
+                return field.markTile(row, column);
+            default:
+                return field.chord(row, column);
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package minesweeper.core;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append only journal of moves, so that a game survives a crash of the
+ * application.
+ * <p>
+ * The journal file starts with a header: magic number, format version and
+ * length of a snapshot in {@link SaveGame} format. The snapshot follows, then
+ * fixed width records of moves played on the snapshot: move code, row,
+ * column and elapsed milliseconds. Moves are buffered and written with one
+ * fsync per group by a background thread, so a crash loses at most the last
+ * {@link #GROUP_COMMIT_MILLIS} milliseconds of play. After
+ * {@link #COMPACTION_MOVES} moves the journal is rewritten with a new
+ * snapshot in the background.
+ */
+public final class MoveJournal implements MoveListener, Closeable {
+
+    /**
+     * Magic number at the file start, "MSJN".
+     */
+    private static final int MAGIC = 0x4d534a4e;
+
+    /**
+     * Version of the file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Header size in bytes.
+     */
+    private static final int HEADER_SIZE = 4 + 4 + 4;
+
+    /**
+     * Record size in bytes.
+     */
+    private static final int RECORD_SIZE = 16;
+
+    /**
+     * Buffered moves are synced at least this often.
+     */
+    static final int GROUP_COMMIT_MILLIS = 20;
+
+    /**
+     * Number of moves after which the journal is compacted.
+     */
+    static final int COMPACTION_MOVES = 4096;
+
+    /**
+     * Journal file.
+     */
+    private final Path path;
+
+    /**
+     * Time of the game start shifted by the time played before the journal
+     * was created.
+     */
+    private final long startMillis;
+
+    /**
+     * Moves not yet written to the file.
+     */
+    private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 256);
+
+    /**
+     * Thread syncing and compacting the journal.
+     */
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Channel of the journal file.
+     */
+    private FileChannel channel;
+
+    /**
+     * File position of the first move record.
+     */
+    private long recordsStart;
+
+    /**
+     * Number of moves in the journal, including buffered ones.
+     */
+    private int moveCount;
+
+    /**
+     * True while a compaction is running.
+     */
+    private boolean compacting;
+
+    /**
+     * Creates journal of a field, existing journal file is replaced.
+     *
+     * @param fileName file name
+     * @param field field
+     * @param elapsedMillis time already played
+     * @throws IOException if the file can not be written
+     * @throws IllegalArgumentException if the field is endless
+     */
+    public MoveJournal(String fileName, Field field, long elapsedMillis) throws IOException {
+        path = Paths.get(fileName);
+        startMillis = System.currentTimeMillis() - elapsedMillis;
+        recordsStart = writeFile(path, new SaveGame(field, elapsedMillis));
+        channel = open(path);
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "Move journal");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                sync();
+            }
+        }, GROUP_COMMIT_MILLIS, GROUP_COMMIT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Appends move to the journal.
+     *
+     * @param field field
+     * @param move move
+     * @param row row number
+     * @param column column number
+     */
+    @Override
+    public synchronized void movePlayed(Field field, Move move, int row, int column) {
+        if (channel == null) {
+            return;
+        }
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.putInt(move.ordinal()).putInt(row).putInt(column);
+        buffer.putInt((int) (System.currentTimeMillis() - startMillis));
+        moveCount++;
+        if (moveCount >= COMPACTION_MOVES && !compacting) {
+            compacting = true;
+            final SaveGame snapshot = new SaveGame(field.snapshot(), System.currentTimeMillis() - startMillis);
+            final int compactedCount = moveCount;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    compact(snapshot, compactedCount);
+                }
+            });
+        }
+    }
+
+    /**
+     * Writes buffered moves to the file.
+     */
+    private synchronized void flush() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            System.out.println("Cant write the journal!");
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes buffered moves and syncs the file. The sync is done outside of
+     * the lock, so that moves are not delayed by the disk.
+     */
+    private void sync() {
+        final FileChannel syncedChannel;
+        synchronized (this) {
+            if (channel == null || buffer.position() == 0) {
+                return;
+            }
+            flush();
+            syncedChannel = channel;
+        }
+        try {
+            syncedChannel.force(false);
+        } catch (ClosedChannelException e) {
+            // journal was compacted or closed meanwhile, the new file is synced
+        } catch (IOException e) {
+            System.out.println("Cant sync the journal!");
+        }
+    }
+
+    /**
+     * Replaces the journal with a snapshot followed by moves played after the
+     * snapshot was taken.
+     *
+     * @param snapshot snapshot of the game
+     * @param compactedCount number of moves contained in the snapshot
+     */
+    private void compact(SaveGame snapshot, int compactedCount) {
+        final Path temp = Paths.get(path + ".tmp");
+        try {
+            final long newRecordsStart = writeFile(temp, snapshot);
+            synchronized (this) {
+                if (channel == null) {
+                    return;
+                }
+                flush();
+                try (FileChannel tempChannel = open(temp)) {
+                    final long tailStart = recordsStart + (long) compactedCount * RECORD_SIZE;
+                    long position = tailStart;
+                    while (position < channel.size()) {
+                        position += channel.transferTo(position, channel.size() - position, tempChannel);
+                    }
+                    tempChannel.force(true);
+                }
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                channel.close();
+                channel = open(path);
+                recordsStart = newRecordsStart;
+                moveCount -= compactedCount;
+            }
+        } catch (IOException e) {
+            System.out.println("Cant compact the journal!");
+        } finally {
+            synchronized (this) {
+                compacting = false;
+            }
+        }
+    }
+
+    /**
+     * Writes all buffered moves, syncs and closes the journal.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            if (channel == null) {
+                return;
+            }
+            flush();
+            try {
+                channel.force(false);
+                channel.close();
+            } catch (IOException e) {
+                System.out.println("Cant close the journal!");
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Closes and deletes the journal, e.g. when the game was saved or ended.
+     */
+    public void delete() {
+        close();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.out.println("Cant delete the journal!");
+        }
+    }
+
+    /**
+     * Rebuilds game from a journal file. Moves are replayed on the snapshot,
+     * incomplete or damaged records at the end are ignored.
+     *
+     * @param fileName file name
+     * @return recovered game
+     * @throws IOException if the file can not be read or is not a journal
+     */
+    public static SaveGame recover(String fileName) throws IOException {
+        final ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(Paths.get(fileName)));
+        if (file.remaining() < HEADER_SIZE || file.getInt() != MAGIC) {
+            throw new IOException("Wrong journal file!");
+        }
+        if (file.getInt() != VERSION) {
+            throw new IOException("Unsupported journal file version!");
+        }
+        final int snapshotLength = file.getInt();
+        if (snapshotLength < 0 || snapshotLength > file.remaining()) {
+            throw new IOException("Wrong journal file length!");
+        }
+        final ByteBuffer snapshotBuffer = file.slice();
+        snapshotBuffer.limit(snapshotLength);
+        final SaveGame snapshot = SaveGame.read(snapshotBuffer);
+        file.position(file.position() + snapshotLength);
+
+        final Field field = snapshot.getField();
+        final Move[] moves = Move.values();
+        long elapsedMillis = snapshot.getElapsedMillis();
+        while (file.remaining() >= RECORD_SIZE) {
+            final int code = file.getInt();
+            final int row = file.getInt();
+            final int column = file.getInt();
+            final int millis = file.getInt();
+            if (code < 0 || code >= moves.length || row < 0 || row >= field.getRowCount()
+                    || column < 0 || column >= field.getColumnCount()) {
+                break;
+            }
+            moves[code].play(field, row, column);
+            elapsedMillis = millis;
+        }
+        return new SaveGame(field, elapsedMillis);
+    }
+
+    /**
+     * Writes journal file with header and snapshot, without moves.
+     *
+     * @param file file path
+     * @param snapshot snapshot of the game
+     * @return file position of the first move record
+     * @throws IOException if the file can not be written
+     */
+    private static long writeFile(Path file, SaveGame snapshot) throws IOException {
+        final ByteBuffer snapshotBuffer = snapshot.toBuffer();
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(snapshotBuffer.remaining());
+        header.flip();
+        try (FileChannel fileChannel = new RandomAccessFile(file.toFile(), "rw").getChannel()) {
+            fileChannel.truncate(0);
+            while (header.hasRemaining() || snapshotBuffer.hasRemaining()) {
+                fileChannel.write(new ByteBuffer[]{header, snapshotBuffer});
+            }
+            fileChannel.force(true);
+            return fileChannel.size();
+        }
+    }
+
+    /**
+     * Opens journal file for appending.
+     *
+     * @param file file path
+     * @return channel positioned at the end of the file
+     * @throws IOException if the file can not be opened
+     */
+    private static FileChannel open(Path file) throws IOException {
+        final FileChannel fileChannel = new RandomAccessFile(file.toFile(), "rw").getChannel();
+        fileChannel.position(fileChannel.size());
+        return fileChannel;
+    }
+}
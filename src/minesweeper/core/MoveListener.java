@@ -0,0 +1,18 @@
+package minesweeper.core;
+
+/**
+ * Implementing an interface allows a class to be notified about moves
+ * played on a field.
+ */
+public interface MoveListener {
+
+    /**
+     * Called after a move changed some tiles.
+     *
+     * @param field field
+     * @param move move
+     * @param row row number
+     * @param column column number
+     */
+    void movePlayed(Field field, Move move, int row, int column);
+}
@@ -0,0 +1,357 @@
+package minesweeper.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Recording of a game - the starting field and timestamped moves.
+ * <p>
+ * Seeded fields with all tiles closed are stored by their seed and by whether
+ * mines are placed yet, other fields as a snapshot in {@link SaveGame} format. Each move is stored as two
+ * varints: milliseconds since the previous move and the zigzag encoded
+ * difference of its flat index from the previous move, shifted left by two
+ * bits holding the move kind.
+ */
+public final class Replay implements MoveListener {
+
+    /**
+     * Magic number at the file start, "MSRP".
+     */
+    private static final int MAGIC = 0x4d535250;
+
+    /**
+     * Version of the file format.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Version of the file format whose seeded fields were generated at once.
+     */
+    private static final int FIRST_VERSION = 1;
+
+    /**
+     * Start stored by seed of a field with mines placed at once.
+     */
+    private static final byte SEEDED = 0;
+
+    /**
+     * Start stored by seed of an endless field.
+     */
+    private static final byte ENDLESS = 1;
+
+    /**
+     * Start stored as a snapshot.
+     */
+    private static final byte SNAPSHOT = 2;
+
+    /**
+     * Start stored by seed of a field whose mines are placed off the first
+     * opened tile and its neighbours.
+     */
+    private static final byte PENDING = 3;
+
+    /**
+     * Start stored by seed of a field whose mines are placed off the first
+     * opened tile only.
+     */
+    private static final byte PENDING_TILE = 4;
+
+    /**
+     * Kind of the start.
+     */
+    private final byte kind;
+
+    /**
+     * Row count.
+     */
+    private final int rowCount;
+
+    /**
+     * Column count.
+     */
+    private final int columnCount;
+
+    /**
+     * Mine count.
+     */
+    private final int mineCount;
+
+    /**
+     * Seed of the mine layout.
+     */
+    private final long seed;
+
+    /**
+     * Starting field in save file format, null for seeded starts.
+     */
+    private final byte[] snapshot;
+
+    /**
+     * Encoded moves, first length bytes are valid.
+     */
+    private byte[] moves;
+
+    /**
+     * Number of valid bytes of moves.
+     */
+    private int length;
+
+    /**
+     * Number of recorded moves.
+     */
+    private int moveCount;
+
+    /**
+     * Start of the recording.
+     */
+    private final long startMillis;
+
+    /**
+     * Time of the last move since the start.
+     */
+    private long lastMillis;
+
+    /**
+     * Flat index of the last move.
+     */
+    private int lastIndex;
+
+    /**
+     * Starts recording of a field. Set the replay as move listener of the
+     * field to record its moves.
+     *
+     * @param field field
+     * @throws IllegalArgumentException if the field is endless and some of
+     * its tiles are not closed
+     */
+    public Replay(Field field) {
+        rowCount = field.getRowCount();
+        columnCount = field.getColumnCount();
+        mineCount = field.getMineCount();
+        seed = field.getSeed();
+        final boolean closed = field.getTileCount(Tile.State.CLOSED) == rowCount * columnCount;
+        if (field.getBoard().getLayout() == null) {
+            if (!closed) {
+                throw new IllegalArgumentException("Endless field can be recorded only from the start!");
+            }
+            kind = ENDLESS;
+            snapshot = null;
+        } else if (closed && field.isPending()) {
+            kind = field.isOpening() ? PENDING : PENDING_TILE;
+            snapshot = null;
+        } else if (closed && seed != 0) {
+            kind = SEEDED;
+            snapshot = null;
+        } else {
+            kind = SNAPSHOT;
+            final ByteBuffer buffer = new SaveGame(field, 0).toBuffer();
+            snapshot = new byte[buffer.remaining()];
+            buffer.get(snapshot);
+        }
+        moves = new byte[64];
+        startMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Constructor of a read replay.
+     *
+     * @param kind kind of the start
+     * @param rowCount row count
+     * @param columnCount column count
+     * @param mineCount mine count
+     * @param seed seed of the mine layout
+     * @param snapshot starting field in save file format or null
+     * @param moves encoded moves
+     * @param moveCount number of moves
+     */
+    private Replay(byte kind, int rowCount, int columnCount, int mineCount, long seed, byte[] snapshot,
+            byte[] moves, int moveCount) {
+        this.kind = kind;
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        this.mineCount = mineCount;
+        this.seed = seed;
+        this.snapshot = snapshot;
+        this.moves = moves;
+        this.length = moves.length;
+        this.moveCount = moveCount;
+        this.startMillis = 0;
+    }
+
+    /**
+     * Records move.
+     *
+     * @param field field
+     * @param move move
+     * @param row row number
+     * @param column column number
+     */
+    @Override
+    public synchronized void movePlayed(Field field, Move move, int row, int column) {
+        final long millis = Math.max(lastMillis, System.currentTimeMillis() - startMillis);
+        final int index = row * columnCount + column;
+        final long delta = (long) index - lastIndex;
+        if (length + 20 > moves.length) {
+            moves = Arrays.copyOf(moves, moves.length * 2);
+        }
+        putVarint(millis - lastMillis);
+        putVarint(((delta << 1) ^ (delta >> 63)) << 2 | move.ordinal());
+        lastMillis = millis;
+        lastIndex = index;
+        moveCount++;
+    }
+
+    /**
+     * Appends unsigned varint to moves.
+     *
+     * @param value value
+     */
+    private void putVarint(long value) {
+        while ((value & ~0x7fL) != 0) {
+            moves[length++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        moves[length++] = (byte) value;
+    }
+
+    /**
+     * Returns number of recorded moves.
+     *
+     * @return move count
+     */
+    public synchronized int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Creates field in the starting state of the recording.
+     *
+     * @return new field
+     */
+    Field createField() {
+        switch (kind) {
+            case SEEDED:
+                return Field.createGenerated(rowCount, columnCount, mineCount, seed);
+            case PENDING:
+                return new Field(rowCount, columnCount, mineCount, seed, true);
+            case PENDING_TILE:
+                return new Field(rowCount, columnCount, mineCount, seed, false);
+            case ENDLESS:
+                return Field.createEndless(rowCount, columnCount, mineCount, seed);
+            default:
+                try {
+                    return SaveGame.read(ByteBuffer.wrap(snapshot)).getField();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+        }
+    }
+
+    /**
+     * Decodes recorded moves.
+     *
+     * @param codes move kind ordinals
+     * @param indices flat indices
+     * @param times milliseconds since the recording start
+     */
+    synchronized void decode(int[] codes, int[] indices, long[] times) {
+        final ByteBuffer buffer = ByteBuffer.wrap(moves, 0, length);
+        long millis = 0;
+        long index = 0;
+        for (int i = 0; i < moveCount; i++) {
+            millis += getVarint(buffer);
+            final long value = getVarint(buffer);
+            final long zigzag = value >>> 2;
+            index += (zigzag >>> 1) ^ -(zigzag & 1);
+            codes[i] = (int) (value & 3);
+            indices[i] = (int) index;
+            times[i] = millis;
+        }
+    }
+
+    /**
+     * Reads unsigned varint.
+     *
+     * @param buffer buffer
+     * @return value
+     */
+    private static long getVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0;; shift += 7) {
+            final byte b = buffer.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Writes the replay to a file.
+     *
+     * @param fileName file name
+     * @throws IOException if the file can not be written
+     */
+    public synchronized void write(String fileName) throws IOException {
+        final int snapshotLength = snapshot == null ? 0 : snapshot.length;
+        final ByteBuffer buffer = ByteBuffer.allocate(4 + 4 + 1 + 4 + 4 + 4 + 8 + 4 + snapshotLength + 4 + 4 + length);
+        buffer.putInt(MAGIC).putInt(VERSION).put(kind);
+        buffer.putInt(rowCount).putInt(columnCount).putInt(mineCount).putLong(seed);
+        buffer.putInt(snapshotLength);
+        if (snapshot != null) {
+            buffer.put(snapshot);
+        }
+        buffer.putInt(moveCount).putInt(length).put(moves, 0, length);
+        Files.write(Paths.get(fileName), buffer.array());
+    }
+
+    /**
+     * Reads replay from a file.
+     *
+     * @param fileName file name
+     * @return replay
+     * @throws IOException if the file can not be read or is not a replay
+     */
+    public static Replay read(String fileName) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(Paths.get(fileName)));
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Wrong replay file!");
+            }
+            final int version = buffer.getInt();
+            if (version != VERSION && version != FIRST_VERSION) {
+                throw new IOException("Unsupported replay file version!");
+            }
+            final byte kind = buffer.get();
+            final int rowCount = buffer.getInt();
+            final int columnCount = buffer.getInt();
+            final int mineCount = buffer.getInt();
+            final long seed = buffer.getLong();
+            byte[] snapshot = new byte[buffer.getInt()];
+            buffer.get(snapshot);
+            if (kind < SEEDED || kind > (version == VERSION ? PENDING_TILE : SNAPSHOT)
+                    || (kind == SNAPSHOT) != (snapshot.length > 0)) {
+                throw new IOException("Wrong replay file!");
+            }
+            final int moveCount = buffer.getInt();
+            final byte[] moves = new byte[buffer.getInt()];
+            buffer.get(moves);
+            final Replay replay = new Replay(kind, rowCount, columnCount, mineCount, seed,
+                    kind == SNAPSHOT ? snapshot : null, moves, moveCount);
+            final int[] codes = new int[moveCount];
+            final int[] indices = new int[moveCount];
+            replay.decode(codes, indices, new long[moveCount]);
+            for (int i = 0; i < moveCount; i++) {
+                if (codes[i] >= Move.values().length || indices[i] < 0 || indices[i] >= rowCount * columnCount) {
+                    throw new IOException("Wrong replay move!");
+                }
+            }
+            return replay;
+        } catch (RuntimeException e) {
+            throw new IOException("Wrong replay file!", e);
+        }
+    }
+}
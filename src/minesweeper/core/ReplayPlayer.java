@@ -0,0 +1,149 @@
+package minesweeper.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Playback of a replay. Moves are played one by one on a field. Snapshots of
+ * the field every {@link #KEYFRAME_INTERVAL} moves are taken when the replay
+ * is loaded, so seeking to any move replays at most that many moves.
+ */
+public final class ReplayPlayer {
+
+    /**
+     * Number of moves between keyframes.
+     */
+    static final int KEYFRAME_INTERVAL = 256;
+
+    /**
+     * Move kind ordinals.
+     */
+    private final int[] codes;
+
+    /**
+     * Flat indices of moves.
+     */
+    private final int[] indices;
+
+    /**
+     * Times of moves since the recording start in milliseconds.
+     */
+    private final long[] times;
+
+    /**
+     * Snapshots of the field after each KEYFRAME_INTERVAL moves, the first
+     * one before any move.
+     */
+    private final List<Field> keyframes = new ArrayList<Field>();
+
+    /**
+     * Field in the current position.
+     */
+    private Field field;
+
+    /**
+     * Number of moves played on the field.
+     */
+    private int position;
+
+    /**
+     * Constructor. The whole replay is played once to take the keyframes.
+     * Snapshots share unchanged tile pages, so a keyframe costs the pages
+     * changed since the previous one.
+     *
+     * @param replay replay
+     */
+    public ReplayPlayer(Replay replay) {
+        final int moveCount = replay.getMoveCount();
+        codes = new int[moveCount];
+        indices = new int[moveCount];
+        times = new long[moveCount];
+        replay.decode(codes, indices, times);
+        field = replay.createField();
+        keyframes.add(field.snapshot());
+        while (position < moveCount) {
+            step();
+            if (position % KEYFRAME_INTERVAL == 0) {
+                keyframes.add(field.snapshot());
+            }
+        }
+        field = keyframes.get(0).snapshot();
+        position = 0;
+    }
+
+    /**
+     * Returns field in the current position. Seeking may replace it.
+     *
+     * @return field
+     */
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * Returns number of moves played.
+     *
+     * @return position
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns number of moves of the replay.
+     *
+     * @return move count
+     */
+    public int getMoveCount() {
+        return codes.length;
+    }
+
+    /**
+     * Returns time between the previous and the next move.
+     *
+     * @return delay in milliseconds, 0 at the end
+     */
+    public long getDelayMillis() {
+        if (position == codes.length) {
+            return 0;
+        }
+        return times[position] - (position == 0 ? 0 : times[position - 1]);
+    }
+
+    /**
+     * Plays the next move.
+     *
+     * @return tiles changed by the move, null at the end of the replay
+     */
+    public ChangeSet step() {
+        if (position == codes.length) {
+            return null;
+        }
+        final int columnCount = field.getColumnCount();
+        final ChangeSet changes = Move.values()[codes[position]].play(field,
+                indices[position] / columnCount, indices[position] % columnCount);
+        position++;
+        return changes;
+    }
+
+    /**
+     * Moves playback to a position. Playback starts from the nearest keyframe
+     * unless the position is ahead of the current one within the same
+     * keyframe interval.
+     *
+     * @param target number of moves played after seeking
+     * @return field in the new position, it may be a new field
+     */
+    public Field seek(int target) {
+        target = Math.max(0, Math.min(target, codes.length));
+        final int keyframe = target / KEYFRAME_INTERVAL;
+        if (target < position || keyframe * KEYFRAME_INTERVAL > position) {
+            field = keyframes.get(keyframe).snapshot();
+            position = keyframe * KEYFRAME_INTERVAL;
+        }
+        while (position < target) {
+            step();
+        }
+        return field;
+    }
+}
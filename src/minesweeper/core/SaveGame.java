@@ -0,0 +1,254 @@
+package minesweeper.core;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Saved game - field together with elapsed playing time, stored in a compact
+ * binary file.
+ * <p>
+ * The file starts with a header: magic number, format version, row count,
+ * column count, mine count, seed, game state, flags and elapsed milliseconds.
+ * Flag bit 0 is set while mines are not placed yet, bit 1 if the first click
+ * keeps its neighbours free too. Version 1 files have no flags. Mine bitset
+ * follows as longs in flat index order, then tile state codes packed
+ * two per byte. Numbers are big endian.
+ */
+public final class SaveGame {
+
+    /**
+     * Magic number at the file start, "MSSV".
+     */
+    private static final int MAGIC = 0x4d535356;
+
+    /**
+     * Version of the file format.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Version of the file format without flags.
+     */
+    private static final int FIRST_VERSION = 1;
+
+    /**
+     * Header size in bytes.
+     */
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 4 + 8 + 1 + 1 + 8;
+
+    /**
+     * Flag of a field whose mines are not placed yet.
+     */
+    private static final int PENDING = 1;
+
+    /**
+     * Flag of a field whose first click keeps its neighbours free.
+     */
+    private static final int OPENING = 2;
+
+    /**
+     * Files of at least this many bytes are memory mapped when read.
+     */
+    private static final long MAP_THRESHOLD = 1 << 16;
+
+    /**
+     * Saved field.
+     */
+    private final Field field;
+
+    /**
+     * Elapsed playing time in milliseconds.
+     */
+    private final long elapsedMillis;
+
+    /**
+     * Constructor.
+     *
+     * @param field field
+     * @param elapsedMillis elapsed playing time in milliseconds
+     */
+    public SaveGame(Field field, long elapsedMillis) {
+        this.field = field;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Returns saved field.
+     *
+     * @return field
+     */
+    public Field getField() {
+        return field;
+    }
+
+    /**
+     * Returns elapsed playing time.
+     *
+     * @return elapsed playing time in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Writes the game to a file. The file is written next to the target and
+     * moved over it, so an interrupted save keeps the previous file.
+     *
+     * @param fileName file name
+     * @throws IOException if the file can not be written
+     * @throws IllegalArgumentException if the field is endless
+     */
+    public void write(String fileName) throws IOException {
+        final ByteBuffer buffer = toBuffer();
+        final Path target = Paths.get(fileName);
+        final Path temp = Paths.get(fileName + ".tmp");
+        try (FileChannel channel = new RandomAccessFile(temp.toFile(), "rw").getChannel()) {
+            channel.truncate(0);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Returns the game in save file format.
+     *
+     * @return buffer ready for reading
+     * @throws IllegalArgumentException if the field is endless
+     */
+    ByteBuffer toBuffer() {
+        final ArrayBoard layout = field.getBoard().getLayout();
+        if (layout == null) {
+            throw new IllegalArgumentException("Endless field can not be saved!");
+        }
+        final Board board = field.getBoard();
+        final long[] mines = layout.getMineWords();
+        final int size = board.size();
+
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + mines.length * 8 + (size + 1) / 2);
+        buffer.putInt(MAGIC).putInt(VERSION);
+        buffer.putInt(field.getRowCount()).putInt(field.getColumnCount()).putInt(field.getMineCount());
+        buffer.putLong(field.getSeed());
+        buffer.put((byte) field.getState().ordinal());
+        buffer.put((byte) ((field.isPending() ? PENDING : 0) | (field.isOpening() ? OPENING : 0)));
+        buffer.putLong(elapsedMillis);
+        buffer.asLongBuffer().put(mines);
+        buffer.position(buffer.position() + mines.length * 8);
+        for (int index = 0; index < size; index += 2) {
+            final int high = index + 1 < size ? board.getState(index + 1) : Board.CLOSED;
+            buffer.put((byte) (board.getState(index) | high << 4));
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Reads game from a file. Big files are memory mapped, small ones are
+     * read into memory. The game is decoded into heap arrays, no reference
+     * to the mapping is kept after reading.
+     * <p>
+     * A mapping is only released when it is garbage collected. Until then
+     * some platforms, e.g. Windows, refuse to delete a mapped file, even
+     * though it is closed.
+     *
+     * @param fileName file name
+     * @return saved game
+     * @throws IOException if the file can not be read or is not a save file
+     */
+    public static SaveGame read(String fileName) throws IOException {
+        try (FileChannel channel = new RandomAccessFile(fileName, "r").getChannel()) {
+            final long fileSize = channel.size();
+            if (fileSize > Integer.MAX_VALUE) {
+                throw new IOException("Wrong save file length!");
+            }
+            final ByteBuffer buffer;
+            if (fileSize >= MAP_THRESHOLD) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            } else {
+                buffer = ByteBuffer.allocate((int) fileSize);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        throw new IOException("Wrong save file length!");
+                    }
+                }
+                buffer.flip();
+            }
+            return read(buffer);
+        }
+    }
+
+    /**
+     * Reads game from a buffer, all remaining bytes must belong to the game.
+     * Nothing read refers to the buffer.
+     *
+     * @param buffer buffer with file content
+     * @return saved game
+     * @throws IOException if the buffer does not contain a save file
+     */
+    static SaveGame read(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < HEADER_SIZE - 1 || buffer.getInt() != MAGIC) {
+            throw new IOException("Wrong save file!");
+        }
+        final int version = buffer.getInt();
+        if (version != VERSION && version != FIRST_VERSION) {
+            throw new IOException("Unsupported save file version!");
+        }
+        if (version == VERSION && buffer.remaining() < HEADER_SIZE - 8) {
+            throw new IOException("Wrong save file!");
+        }
+        final int rowCount = buffer.getInt();
+        final int columnCount = buffer.getInt();
+        final int mineCount = buffer.getInt();
+        final long seed = buffer.getLong();
+        final int stateOrdinal = buffer.get();
+        final int flags = version == VERSION ? buffer.get() : 0;
+        final boolean pending = (flags & PENDING) != 0;
+        final long elapsedMillis = buffer.getLong();
+        if (rowCount <= 0 || columnCount <= 0 || (long) rowCount * columnCount > Integer.MAX_VALUE
+                || stateOrdinal < 0 || stateOrdinal >= GameState.values().length) {
+            throw new IOException("Wrong save file!");
+        }
+        final int size = rowCount * columnCount;
+        final long[] mines = new long[(size + 63) >>> 6];
+        if (buffer.remaining() != mines.length * 8L + (size + 1) / 2) {
+            throw new IOException("Wrong save file length!");
+        }
+        buffer.asLongBuffer().get(mines);
+        buffer.position(buffer.position() + mines.length * 8);
+
+        final byte[] packed = new byte[(size + 1) / 2];
+        buffer.get(packed);
+        final byte[] codes = new byte[size];
+        for (int index = 0; index < size; index += 2) {
+            codes[index] = (byte) (packed[index >>> 1] & 15);
+            if (index + 1 < size) {
+                codes[index + 1] = (byte) ((packed[index >>> 1] >>> 4) & 15);
+            }
+        }
+
+        int savedMineCount = 0;
+        for (long word : mines) {
+            savedMineCount += Long.bitCount(word);
+        }
+        if (savedMineCount != (pending ? 0 : mineCount) || pending && (mineCount < 0 || mineCount > size)) {
+            throw new IOException("Wrong save file mine count!");
+        }
+        try {
+            // mines of a pending field are placed by the first click, its empty board needs no clues
+            final ArrayBoard board = pending ? new ArrayBoard(rowCount, columnCount)
+                    : new ArrayBoard(rowCount, columnCount, mines);
+            final Field field = new Field(board, mineCount, seed, pending, (flags & OPENING) != 0);
+            field.restore(codes, GameState.values()[stateOrdinal]);
+            return new SaveGame(field, elapsedMillis);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Wrong save file!", e);
+        }
+    }
+}
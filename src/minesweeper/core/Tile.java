@@ -35,9 +35,33 @@ public abstract class Tile implements Serializable{
     }
 
     /**
-     * Tile state.
+     * Field the tile belongs to.
      */
-    private State state = State.CLOSED;
+    private final Field field;
+
+    /**
+     * Row of the tile.
+     */
+    private final int row;
+
+    /**
+     * Column of the tile.
+     */
+    private final int column;
+
+    /**
+     * Constructor. Tile is a view of a field location, its state is stored in
+     * the field.
+     *
+     * @param field field the tile belongs to
+     * @param row row of the tile
+     * @param column column of the tile
+     */
+    Tile(Field field, int row, int column) {
+        this.field = field;
+        this.row = row;
+        this.column = column;
+    }
 
     /**
      * Returns current state of this tile.
@@ -45,15 +69,33 @@ public abstract class Tile implements Serializable{
      * @return current state of this tile
      */
     public State getState() {
-        return state;
+        return field.stateAt(row, column);
+    }
+
+    /**
+     * Returns field the tile belongs to.
+     *
+     * @return field
+     */
+    Field getField() {
+        return field;
+    }
+
+    /**
+     * Returns row of the tile.
+     *
+     * @return row
+     */
+    int getRow() {
+        return row;
     }
 
     /**
-     * Sets current current state of this tile.
+     * Returns column of the tile.
      *
-     * @param state current state of this tile
+     * @return column
      */
-    void setState(State state) {
-        this.state = state;
+    int getColumn() {
+        return column;
     }
 }
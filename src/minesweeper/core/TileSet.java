@@ -0,0 +1,247 @@
+package minesweeper.core;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Set of tiles kept as a dense list of flat indices, so that it can be read
+ * in order without allocation. Membership is a bitset and the list position
+ * of each member is kept too, so that removal moves the last member into the
+ * hole. Bitset and positions are split into pages allocated when a tile of
+ * the page first joins, and pages are found through directories allocated
+ * with their first page, so memory follows the touched area, not the board
+ * size. Copies share pages until written.
+ */
+public final class TileSet implements Serializable {
+
+    /**
+     * Binary logarithm of the number of tiles of a page.
+     */
+    private static final int PAGE_SHIFT = 12;
+
+    /**
+     * Mask of tile position inside page.
+     */
+    private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+    /**
+     * Binary logarithm of the number of pages of a directory.
+     */
+    private static final int DIRECTORY_SHIFT = 10;
+
+    /**
+     * Mask of page position inside directory.
+     */
+    private static final int DIRECTORY_MASK = (1 << DIRECTORY_SHIFT) - 1;
+
+    /**
+     * Source of write epochs, each set and copy gets a new one.
+     */
+    private static final AtomicLong EPOCHS = new AtomicLong();
+
+    /**
+     * Directories of pages, null directories and pages have no members.
+     */
+    private Page[][] directories;
+
+    /**
+     * Epoch of pages owned by this set, other pages are shared with a copy
+     * and must be copied before write. Epochs start at 1, so a deserialized
+     * set owns none of its pages.
+     */
+    private transient long epoch = EPOCHS.incrementAndGet();
+
+    /**
+     * Flat indices of members, first size entries are valid.
+     */
+    private int[] items = new int[16];
+
+    /**
+     * Number of members.
+     */
+    private int size;
+
+    /**
+     * Constructor of an empty set.
+     *
+     * @param tileCount number of tiles of the board
+     */
+    TileSet(int tileCount) {
+        final long pageCount = ((long) tileCount + PAGE_MASK) >>> PAGE_SHIFT;
+        directories = new Page[(int) ((pageCount + DIRECTORY_MASK) >>> DIRECTORY_SHIFT)][];
+    }
+
+    /**
+     * Returns number of tiles in the set.
+     *
+     * @return size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns tile at a position of the list. Positions change when tiles are
+     * removed.
+     *
+     * @param i position from 0 to size() - 1
+     * @return flat index {@code row * columnCount + column}
+     */
+    public int get(int i) {
+        if (i < 0 || i >= size) {
+            throw new IllegalArgumentException("Wrong argument position!");
+        }
+        return items[i];
+    }
+
+    /**
+     * Returns true if the tile is in the set.
+     *
+     * @param index flat index
+     * @return true for members
+     */
+    public boolean contains(int index) {
+        final Page[] pages = directories[index >>> (PAGE_SHIFT + DIRECTORY_SHIFT)];
+        if (pages == null) {
+            return false;
+        }
+        final Page page = pages[(index >>> PAGE_SHIFT) & DIRECTORY_MASK];
+        return page != null && (page.bits[(index & PAGE_MASK) >>> 6] & 1L << index) != 0;
+    }
+
+    /**
+     * Adds tile to the set.
+     *
+     * @param index flat index
+     */
+    void add(int index) {
+        if (contains(index)) {
+            return;
+        }
+        final Page page = ownPage(index >>> PAGE_SHIFT);
+        page.bits[(index & PAGE_MASK) >>> 6] |= 1L << index;
+        page.positions[index & PAGE_MASK] = size;
+        if (size == items.length) {
+            items = Arrays.copyOf(items, size * 2);
+        }
+        items[size++] = index;
+    }
+
+    /**
+     * Removes tile from the set.
+     *
+     * @param index flat index
+     * @return true if the tile was in the set
+     */
+    boolean remove(int index) {
+        if (!contains(index)) {
+            return false;
+        }
+        final Page page = ownPage(index >>> PAGE_SHIFT);
+        page.bits[(index & PAGE_MASK) >>> 6] &= ~(1L << index);
+        final int position = page.positions[index & PAGE_MASK];
+        final int last = items[--size];
+        if (last != index) {
+            items[position] = last;
+            ownPage(last >>> PAGE_SHIFT).positions[last & PAGE_MASK] = position;
+        }
+        return true;
+    }
+
+    /**
+     * Adds all tiles of the set to another set.
+     *
+     * @param target set to add to
+     */
+    void addTo(TileSet target) {
+        for (int i = 0; i < size; i++) {
+            target.add(items[i]);
+        }
+    }
+
+    /**
+     * Makes page writable, it is allocated or copied if needed.
+     *
+     * @param number page number
+     * @return page
+     */
+    private Page ownPage(int number) {
+        Page[] pages = directories[number >>> DIRECTORY_SHIFT];
+        if (pages == null) {
+            pages = new Page[1 << DIRECTORY_SHIFT];
+            directories[number >>> DIRECTORY_SHIFT] = pages;
+        }
+        Page page = pages[number & DIRECTORY_MASK];
+        if (page == null) {
+            page = new Page(new long[1 << (PAGE_SHIFT - 6)], new int[1 << PAGE_SHIFT], epoch);
+            pages[number & DIRECTORY_MASK] = page;
+        } else if (page.epoch != epoch) {
+            page = new Page(page.bits.clone(), page.positions.clone(), epoch);
+            pages[number & DIRECTORY_MASK] = page;
+        }
+        return page;
+    }
+
+    /**
+     * Removes all tiles and releases the pages.
+     */
+    void clear() {
+        Arrays.fill(directories, null);
+        size = 0;
+    }
+
+    /**
+     * Returns independent copy of the set. Pages are shared until either set
+     * writes them, directories are copied.
+     *
+     * @return copy
+     */
+    TileSet copy() {
+        epoch = EPOCHS.incrementAndGet();
+        final TileSet copy = new TileSet(0);
+        copy.directories = directories.clone();
+        for (int i = 0; i < directories.length; i++) {
+            if (directories[i] != null) {
+                copy.directories[i] = directories[i].clone();
+            }
+        }
+        copy.items = Arrays.copyOf(items, Math.max(size, 16));
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * Membership bits and list positions of the tiles of a page.
+     */
+    private static final class Page implements Serializable {
+
+        /**
+         * Membership bits.
+         */
+        private final long[] bits;
+
+        /**
+         * List position of each member, valid for members only.
+         */
+        private final int[] positions;
+
+        /**
+         * Epoch of the set which owns the page.
+         */
+        private final long epoch;
+
+        /**
+         * Constructor.
+         *
+         * @param bits membership bits
+         * @param positions list positions
+         * @param epoch epoch of the owning set
+         */
+        private Page(long[] bits, int[] positions, long epoch) {
+            this.bits = bits;
+            this.positions = positions;
+            this.epoch = epoch;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package minesweeper.sim;
+
+import java.util.Random;
+import minesweeper.core.ChangeSet;
+import minesweeper.core.Field;
+import minesweeper.core.Tile;
+
+/**
+ * Baseline strategy opening random closed tiles.
+ */
+public final class RandomStrategy implements Strategy {
+
+    /**
+     * Random generator of the choices.
+     */
+    private final Random random;
+
+    /**
+     * Constructor.
+     *
+     * @param seed seed of the choices
+     */
+    public RandomStrategy(long seed) {
+        random = new Random(seed);
+    }
+
+    @Override
+    public int nextTile(Field field, ChangeSet changes) {
+        return randomClosedTile(field, random);
+    }
+
+    /**
+     * Returns random closed tile. Tiles are drawn until a closed one is hit.
+     *
+     * @param field field with at least one closed tile
+     * @param random random generator
+     * @return flat index of the tile
+     */
+    static int randomClosedTile(Field field, Random random) {
+        final int columnCount = field.getColumnCount();
+        final int size = field.getRowCount() * columnCount;
+        int index;
+        do {
+            index = random.nextInt(size);
+        } while (field.stateAt(index / columnCount, index % columnCount) != Tile.State.CLOSED);
+        return index;
+    }
+}
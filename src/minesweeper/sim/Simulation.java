@@ -0,0 +1,220 @@
+package minesweeper.sim;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import minesweeper.Settings;
+import minesweeper.core.ChangeSet;
+import minesweeper.core.Field;
+import minesweeper.core.GameState;
+import minesweeper.core.Tile;
+
+/**
+ * Headless simulation playing many games without a user interface.
+ * <p>
+ * Games are split evenly among workers, one per core. Each worker has its own
+ * random generator seeded from the simulation seed and its number, which
+ * seeds the fields and the strategy of the worker, so the same seed and
+ * number of cores play the same games.
+ */
+public final class Simulation {
+
+    /**
+     * Added to the seed for each worker.
+     */
+    private static final long SEED_STEP = 0x9e3779b97f4a7c15L;
+
+    /**
+     * Settings of the played fields.
+     */
+    private final Settings settings;
+
+    /**
+     * Factory of worker strategies.
+     */
+    private final StrategyFactory strategyFactory;
+
+    /**
+     * Seed of the simulation.
+     */
+    private final long seed;
+
+    /**
+     * Constructor.
+     *
+     * @param settings settings of the played fields
+     * @param strategyFactory factory of worker strategies
+     * @param seed seed of the simulation
+     */
+    public Simulation(Settings settings, StrategyFactory strategyFactory, long seed) {
+        this.settings = settings;
+        this.strategyFactory = strategyFactory;
+        this.seed = seed;
+    }
+
+    /**
+     * Plays games on all cores.
+     *
+     * @param gameCount number of games
+     * @return statistics of the games
+     */
+    public Statistics run(long gameCount) {
+        return run(gameCount, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Plays games on given number of workers.
+     *
+     * @param gameCount number of games
+     * @param workerCount number of workers
+     * @return statistics of the games
+     */
+    public Statistics run(long gameCount, int workerCount) {
+        if (gameCount < 0 || workerCount <= 0) {
+            throw new IllegalArgumentException("Wrong argument gameCount/workerCount!");
+        }
+        final long start = System.nanoTime();
+        final Worker[] workers = new Worker[workerCount];
+        final ForkJoinPool pool = new ForkJoinPool(workerCount);
+        try {
+            for (int i = 0; i < workerCount; i++) {
+                workers[i] = new Worker(gameCount * (i + 1) / workerCount - gameCount * i / workerCount,
+                        seed + i * SEED_STEP);
+                pool.execute(workers[i]);
+            }
+            final Statistics statistics = new Statistics();
+            for (Worker worker : workers) {
+                worker.join();
+                statistics.add(worker.statistics);
+            }
+            statistics.setElapsedNanos(System.nanoTime() - start);
+            return statistics;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Plays one game.
+     *
+     * @param field field of the game
+     * @param strategy strategy choosing the moves
+     * @param statistics statistics to record the game to
+     */
+    private static void play(Field field, Strategy strategy, Statistics statistics) {
+        final int columnCount = field.getColumnCount();
+        ChangeSet changes = null;
+        int moves = 0;
+        while (field.getState() == GameState.PLAYING) {
+            final int index = strategy.nextTile(field, changes);
+            final int row = index / columnCount;
+            final int column = index % columnCount;
+            final int opened = field.getTileCount(Tile.State.OPEN);
+            changes = field.openTile(row, column);
+            moves++;
+            if (field.getState() != GameState.FAILED && field.clueAt(row, column) == 0) {
+                statistics.addFlood(field.getTileCount(Tile.State.OPEN) - opened);
+            }
+        }
+        statistics.addGame(field.getState() == GameState.SOLVED, moves, field.getBoardValue());
+    }
+
+    /**
+     * Worker playing its share of games.
+     */
+    private final class Worker extends RecursiveAction {
+
+        /**
+         * Number of games to play.
+         */
+        private final long gameCount;
+
+        /**
+         * Seed of the worker.
+         */
+        private final long seed;
+
+        /**
+         * Statistics of the played games.
+         */
+        private final Statistics statistics = new Statistics();
+
+        /**
+         * Constructor.
+         *
+         * @param gameCount number of games to play
+         * @param seed seed of the worker
+         */
+        private Worker(long gameCount, long seed) {
+            this.gameCount = gameCount;
+            this.seed = seed;
+        }
+
+        @Override
+        protected void compute() {
+            final Random random = new Random(seed);
+            final Strategy strategy = strategyFactory.create(random.nextLong());
+            for (long i = 0; i < gameCount; i++) {
+                final Field field = new Field(settings.getRowCount(), settings.getColumnCount(),
+                        settings.getMineCount(), random.nextLong());
+                play(field, strategy, statistics);
+            }
+        }
+    }
+
+    /**
+     * Returns factory of a strategy given by name.
+     *
+     * @param name "random" or "solver"
+     * @return strategy factory
+     */
+    public static StrategyFactory strategy(String name) {
+        if (name.equalsIgnoreCase("random")) {
+            return new StrategyFactory() {
+                @Override
+                public Strategy create(long seed) {
+                    return new RandomStrategy(seed);
+                }
+            };
+        } else if (name.equalsIgnoreCase("solver")) {
+            return new StrategyFactory() {
+                @Override
+                public Strategy create(long seed) {
+                    return new SolverStrategy(seed);
+                }
+            };
+        }
+        throw new IllegalArgumentException("Wrong argument strategy!");
+    }
+
+    /**
+     * Returns settings preset given by name.
+     *
+     * @param name "beginner", "intermediate" or "expert"
+     * @return settings
+     */
+    public static Settings preset(String name) {
+        if (name.equalsIgnoreCase("beginner")) {
+            return Settings.BEGINNER;
+        } else if (name.equalsIgnoreCase("intermediate")) {
+            return Settings.INTERMEDIATE;
+        } else if (name.equalsIgnoreCase("expert")) {
+            return Settings.EXPERT;
+        }
+        throw new IllegalArgumentException("Wrong argument preset!");
+    }
+
+    /**
+     * Main method. Arguments are preset, strategy, game count and seed, all
+     * optional: expert, solver, 100000 and 0 by default.
+     *
+     * @param args arguments
+     */
+    public static void main(String[] args) {
+        final Settings settings = preset(args.length > 0 ? args[0] : "expert");
+        final StrategyFactory factory = strategy(args.length > 1 ? args[1] : "solver");
+        final long gameCount = args.length > 2 ? Long.parseLong(args[2]) : 100000;
+        final long seed = args.length > 3 ? Long.parseLong(args[3]) : 0;
+        System.out.println(new Simulation(settings, factory, seed).run(gameCount));
+    }
+}
@@ -0,0 +1,51 @@
+package minesweeper.sim;
+
+import java.util.Random;
+import minesweeper.core.ChangeSet;
+import minesweeper.core.Field;
+import minesweeper.solver.Solver;
+
+/**
+ * Strategy opening tiles which {@link Solver} proves safe. When no tile is
+ * known to be safe, a random closed tile not known to be a mine is opened.
+ */
+public final class SolverStrategy implements Strategy {
+
+    /**
+     * Random generator of the guesses.
+     */
+    private final Random random;
+
+    /**
+     * Solver of the current game.
+     */
+    private Solver solver;
+
+    /**
+     * Constructor.
+     *
+     * @param seed seed of the guesses
+     */
+    public SolverStrategy(long seed) {
+        random = new Random(seed);
+    }
+
+    @Override
+    public int nextTile(Field field, ChangeSet changes) {
+        if (changes == null) {
+            solver = new Solver(field);
+        } else {
+            solver.update(changes);
+        }
+        final int safe = solver.nextSafeTile();
+        if (safe >= 0) {
+            return safe;
+        }
+        final int columnCount = field.getColumnCount();
+        int index;
+        do {
+            index = RandomStrategy.randomClosedTile(field, random);
+        } while (solver.isMine(index / columnCount, index % columnCount));
+        return index;
+    }
+}
@@ -0,0 +1,190 @@
+package minesweeper.sim;
+
+/**
+ * Statistics of simulated games. Each worker collects its own statistics,
+ * they are merged when the workers finish.
+ */
+public final class Statistics {
+
+    /**
+     * Number of played games.
+     */
+    private long gameCount;
+
+    /**
+     * Number of won games.
+     */
+    private long winCount;
+
+    /**
+     * Number of opened tiles chosen by the strategy.
+     */
+    private long moveCount;
+
+    /**
+     * Sum of board benchmark values (3BV) of the played fields.
+     */
+    private long boardValueSum;
+
+    /**
+     * Number of moves which opened a tile without adjacent mines and flooded
+     * its surroundings.
+     */
+    private long floodCount;
+
+    /**
+     * Tiles opened by flood fills.
+     */
+    private long floodTileCount;
+
+    /**
+     * Most tiles opened by one flood fill.
+     */
+    private int largestFlood;
+
+    /**
+     * Duration of the simulation in nanoseconds.
+     */
+    private long elapsedNanos;
+
+    /**
+     * Records finished game.
+     *
+     * @param won true if the game was won
+     * @param moves number of moves of the game
+     * @param boardValue board benchmark value (3BV) of the field
+     */
+    void addGame(boolean won, int moves, int boardValue) {
+        gameCount++;
+        if (won) {
+            winCount++;
+        }
+        moveCount += moves;
+        boardValueSum += boardValue;
+    }
+
+    /**
+     * Records flood fill.
+     *
+     * @param tiles number of tiles opened by the flood fill
+     */
+    void addFlood(int tiles) {
+        floodCount++;
+        floodTileCount += tiles;
+        largestFlood = Math.max(largestFlood, tiles);
+    }
+
+    /**
+     * Adds statistics of another worker.
+     *
+     * @param other statistics to add
+     */
+    void add(Statistics other) {
+        gameCount += other.gameCount;
+        winCount += other.winCount;
+        moveCount += other.moveCount;
+        boardValueSum += other.boardValueSum;
+        floodCount += other.floodCount;
+        floodTileCount += other.floodTileCount;
+        largestFlood = Math.max(largestFlood, other.largestFlood);
+    }
+
+    /**
+     * Sets duration of the simulation.
+     *
+     * @param elapsedNanos duration in nanoseconds
+     */
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Returns number of played games.
+     *
+     * @return game count
+     */
+    public long getGameCount() {
+        return gameCount;
+    }
+
+    /**
+     * Returns number of won games.
+     *
+     * @return win count
+     */
+    public long getWinCount() {
+        return winCount;
+    }
+
+    /**
+     * Returns number of played games per second.
+     *
+     * @return throughput
+     */
+    public double getGamesPerSecond() {
+        return elapsedNanos == 0 ? 0 : gameCount * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Returns fraction of won games.
+     *
+     * @return win rate from 0 to 1
+     */
+    public double getWinRate() {
+        return gameCount == 0 ? 0 : (double) winCount / gameCount;
+    }
+
+    /**
+     * Returns mean number of moves per game.
+     *
+     * @return mean moves
+     */
+    public double getMeanMoves() {
+        return gameCount == 0 ? 0 : (double) moveCount / gameCount;
+    }
+
+    /**
+     * Returns mean board benchmark value (3BV) of the played fields, the least
+     * number of clicks solving a field.
+     *
+     * @return mean 3BV
+     */
+    public double getMeanBoardValue() {
+        return gameCount == 0 ? 0 : (double) boardValueSum / gameCount;
+    }
+
+    /**
+     * Returns mean number of flood fills per game.
+     *
+     * @return mean flood fills
+     */
+    public double getMeanFloods() {
+        return gameCount == 0 ? 0 : (double) floodCount / gameCount;
+    }
+
+    /**
+     * Returns mean number of tiles opened by a flood fill.
+     *
+     * @return mean flood size
+     */
+    public double getMeanFloodSize() {
+        return floodCount == 0 ? 0 : (double) floodTileCount / floodCount;
+    }
+
+    /**
+     * Returns most tiles opened by one flood fill.
+     *
+     * @return largest flood size
+     */
+    public int getLargestFlood() {
+        return largestFlood;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("games=%d games/s=%.1f win rate=%.4f mean moves=%.2f mean 3BV=%.2f"
+                + " floods/game=%.2f mean flood=%.2f largest flood=%d",
+                gameCount, getGamesPerSecond(), getWinRate(), getMeanMoves(), getMeanBoardValue(),
+                getMeanFloods(), getMeanFloodSize(), largestFlood);
+    }
+}
@@ -0,0 +1,21 @@
+package minesweeper.sim;
+
+import minesweeper.core.ChangeSet;
+import minesweeper.core.Field;
+
+/**
+ * Strategy choosing tiles to open in simulated games. One instance plays the
+ * games of one worker one after another, so it needs not be thread safe.
+ */
+public interface Strategy {
+
+    /**
+     * Returns the next tile to open.
+     *
+     * @param field field of the game
+     * @param changes tiles changed by the previous move, null before the
+     * first move of a game
+     * @return flat index {@code row * columnCount + column} of a closed tile
+     */
+    int nextTile(Field field, ChangeSet changes);
+}
@@ -0,0 +1,15 @@
+package minesweeper.sim;
+
+/**
+ * Factory of strategies, each simulation worker gets its own strategy.
+ */
+public interface StrategyFactory {
+
+    /**
+     * Creates strategy.
+     *
+     * @param seed seed of the strategy random choices
+     * @return new strategy
+     */
+    Strategy create(long seed);
+}
@@ -0,0 +1,948 @@
+package minesweeper.solver;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import minesweeper.core.Field;
+import minesweeper.core.Tile;
+
+/**
+ * Approximate mine probabilities of closed tiles, estimated by sampling mine
+ * configurations. Meant for boards whose frontier is too large for
+ * {@link ProbabilityEngine}. Marked tiles are taken as mines.
+ * <p>
+ * Only configurations of frontier tiles satisfying all clues are visited,
+ * each weighted by the number of ways to place the remaining mines in the
+ * interior. Each core runs a chain starting from its own random configuration
+ * satisfying all clues, found by local search. A step of the chain resamples
+ * the tiles of a few neighbouring clues from their exact distribution given
+ * all other tiles (block Gibbs sampling), so the weighted distribution is
+ * kept and every sample is a consistent configuration. All frontier tiles are
+ * sampled after each sweep. Confidence intervals are computed from means of
+ * batches of sweeps, the batches get longer as the chain runs. Tiles that only change together with tiles farther away
+ * than a block reaches mix slowly, their intervals may be too narrow.
+ */
+public final class MonteCarloSampler {
+
+    /**
+     * Maximum number of batches of a chain, full batches are merged in pairs.
+     */
+    private static final int MAX_BATCHES = 32;
+
+    /**
+     * Maximum number of sweeps before sampling starts. Burn-in takes at most
+     * a quarter of the budget.
+     */
+    private static final int BURN_IN_SWEEPS = 16;
+
+    /**
+     * Probability of a random flip while searching the first configuration.
+     */
+    private static final double NOISE = 0.2;
+
+    /**
+     * Maximum number of variables resampled in one step.
+     */
+    private static final int MAX_BLOCK = 20;
+
+    /**
+     * Maximum number of nodes enumerated in one step.
+     */
+    private static final int MAX_NODES = 1 << 12;
+
+    /**
+     * Number of steps between deadline checks.
+     */
+    private static final int CHECK_STEPS = 256;
+
+    /**
+     * Quantile of the normal distribution for 95% confidence.
+     */
+    private static final double Z95 = 1.96;
+
+    /**
+     * Visible value of a closed tile.
+     */
+    private static final byte CLOSED_TILE = -1;
+
+    /**
+     * Visible value of a marked tile.
+     */
+    private static final byte MARKED_TILE = -2;
+
+    /**
+     * Field.
+     */
+    private final Field field;
+
+    /**
+     * Row count.
+     */
+    private final int rowCount;
+
+    /**
+     * Column count.
+     */
+    private final int columnCount;
+
+    /**
+     * Seed of the chains.
+     */
+    private final long seed;
+
+    /**
+     * Half widths of confidence intervals of the last computation.
+     */
+    private double[] intervals;
+
+    /**
+     * Number of sampled sweeps of the last computation.
+     */
+    private long sampleCount;
+
+    /**
+     * Constructor.
+     *
+     * @param field field
+     */
+    public MonteCarloSampler(Field field) {
+        this(field, new Random().nextLong());
+    }
+
+    /**
+     * Constructor. Chains are seeded from the seed and their number, with the
+     * same time budget they draw the same random numbers.
+     *
+     * @param field field
+     * @param seed seed of the chains
+     */
+    public MonteCarloSampler(Field field, long seed) {
+        this.field = field;
+        this.seed = seed;
+        rowCount = field.getRowCount();
+        columnCount = field.getColumnCount();
+    }
+
+    /**
+     * Returns half widths of 95% confidence intervals of the last
+     * computation. Tiles sampled in less than two batches have 1.
+     *
+     * @return half widths indexed by {@code row * columnCount + column}
+     */
+    public double[] getIntervals() {
+        return intervals;
+    }
+
+    /**
+     * Returns number of sampled sweeps of all chains of the last computation.
+     *
+     * @return sample count
+     */
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Estimates mine probability of each tile. Open tiles have probability
+     * 0, marked tiles 1.
+     *
+     * @param budgetMillis time budget of sampling
+     * @return probabilities indexed by {@code row * columnCount + column}
+     */
+    public double[] compute(long budgetMillis) {
+        final long deadline = System.nanoTime() + budgetMillis * 1000000L;
+        final int size = rowCount * columnCount;
+        final double[] probabilities = new double[size];
+        intervals = new double[size];
+        final byte[] visible = new byte[size];
+        int closedCount = 0;
+        int markedCount = 0;
+        for (int row = 0; row < rowCount; row++) {
+            for (int column = 0; column < columnCount; column++) {
+                final int index = row * columnCount + column;
+                final Tile.State state = field.stateAt(row, column);
+                if (state == Tile.State.MARKED) {
+                    visible[index] = MARKED_TILE;
+                    probabilities[index] = 1;
+                    markedCount++;
+                } else if (state == Tile.State.OPEN) {
+                    visible[index] = (byte) field.clueAt(row, column);
+                } else {
+                    visible[index] = CLOSED_TILE;
+                    closedCount++;
+                }
+            }
+        }
+        final Frontier frontier = new Frontier(size);
+        for (int index = 0; index < size; index++) {
+            if (visible[index] >= 0) {
+                frontier.addClue(visible, index);
+            }
+        }
+        frontier.finish();
+        final int n = frontier.variableCount;
+        final int interiorCount = closedCount - n;
+        final int mines = field.getMineCount() - markedCount;
+
+        sampleCount = 0;
+        final double[] sums = new double[n + 1];
+        final double[] squares = new double[n + 1];
+        final int[] batches = new int[n + 1];
+        if (n > 0) {
+            final long burnInEnd = System.nanoTime() + (deadline - System.nanoTime()) / 4;
+            final Chain[] chains = new Chain[Runtime.getRuntime().availableProcessors()];
+            final ForkJoinPool pool = ProbabilityEngine.sharedPool();
+            for (int i = 0; i < chains.length; i++) {
+                chains[i] = new Chain(frontier, interiorCount, mines, burnInEnd, deadline, new Random(mix(seed + i)));
+                pool.execute(chains[i]);
+            }
+            // batch means of all chains are pooled
+            for (Chain chain : chains) {
+                chain.join();
+                for (int v = 0; v <= n; v++) {
+                    sums[v] += chain.sums[v];
+                    squares[v] += chain.squares[v];
+                    batches[v] += chain.batches[v];
+                }
+                sampleCount += chain.sweeps;
+            }
+        }
+
+        double interiorProbability = closedCount == 0 ? 0 : Math.max(0, Math.min(1, (double) mines / closedCount));
+        double interiorInterval = n == 0 ? 0 : 1;
+        if (n > 0 && batches[n] > 0) {
+            interiorProbability = sums[n] / batches[n];
+            interiorInterval = interval(sums[n], squares[n], batches[n]);
+        }
+        for (int v = 0; v < n; v++) {
+            final int tile = frontier.tiles[v];
+            if (batches[v] > 0) {
+                probabilities[tile] = sums[v] / batches[v];
+                intervals[tile] = interval(sums[v], squares[v], batches[v]);
+            } else {
+                probabilities[tile] = interiorProbability;
+                intervals[tile] = 1;
+            }
+        }
+        for (int index = 0; index < size; index++) {
+            if (visible[index] == CLOSED_TILE && frontier.variables[index] < 0) {
+                probabilities[index] = interiorProbability;
+                intervals[index] = interiorInterval;
+            }
+        }
+        return probabilities;
+    }
+
+    /**
+     * Scrambles seed bits, so that chains with neighbouring seeds do not
+     * start with correlated random numbers.
+     *
+     * @param seed seed
+     * @return scrambled seed
+     */
+    private static long mix(long seed) {
+        seed = (seed ^ (seed >>> 33)) * 0xff51afd7ed558ccdL;
+        seed = (seed ^ (seed >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return seed ^ (seed >>> 33);
+    }
+
+    /**
+     * Returns half width of confidence interval of a mean of batch means.
+     *
+     * @param sum sum of batch means
+     * @param square sum of squared batch means
+     * @param count number of batches
+     * @return half width, 1 if there are too few batches
+     */
+    private static double interval(double sum, double square, int count) {
+        if (count < 2) {
+            return 1;
+        }
+        final double mean = sum / count;
+        final double variance = Math.max(0, (square - mean * sum) / (count - 1));
+        return Math.min(1, Z95 * Math.sqrt(variance / count));
+    }
+
+    /**
+     * Frontier tiles and clues constraining them, stored as compressed
+     * adjacency arrays.
+     */
+    private final class Frontier {
+
+        /**
+         * Variable of each tile, -1 for tiles not on the frontier.
+         */
+        private final int[] variables;
+
+        /**
+         * Flat indices of frontier tiles by variable.
+         */
+        private int[] tiles = new int[64];
+
+        /**
+         * Number of variables.
+         */
+        private int variableCount;
+
+        /**
+         * Start of variables of each clue in clueVariables, one more than
+         * clues.
+         */
+        private int[] clueStarts = new int[64];
+
+        /**
+         * Variables of all clues.
+         */
+        private int[] clueVariables = new int[256];
+
+        /**
+         * Mines among variables of each clue.
+         */
+        private int[] needs = new int[64];
+
+        /**
+         * Number of clues.
+         */
+        private int clueCount;
+
+        /**
+         * Start of clues of each variable in variableClues, one more than
+         * variables.
+         */
+        private int[] variableStarts;
+
+        /**
+         * Clues of all variables.
+         */
+        private int[] variableClues;
+
+        /**
+         * Constructor.
+         *
+         * @param size number of tiles
+         */
+        private Frontier(int size) {
+            variables = new int[size];
+            Arrays.fill(variables, -1);
+        }
+
+        /**
+         * Adds clue of an open tile if it has closed unmarked neighbours.
+         *
+         * @param visible what the player sees on each tile
+         * @param index flat index of the clue
+         */
+        private void addClue(byte[] visible, int index) {
+            final int row = index / columnCount;
+            final int column = index % columnCount;
+            int need = visible[index];
+            final int start = clueStarts[clueCount];
+            int end = start;
+            for (int actRow = Math.max(row - 1, 0); actRow <= Math.min(row + 1, rowCount - 1); actRow++) {
+                for (int actColumn = Math.max(column - 1, 0); actColumn <= Math.min(column + 1, columnCount - 1); actColumn++) {
+                    final int tile = actRow * columnCount + actColumn;
+                    if (visible[tile] == MARKED_TILE) {
+                        need--;
+                    } else if (visible[tile] == CLOSED_TILE) {
+                        if (variables[tile] < 0) {
+                            if (variableCount == tiles.length) {
+                                tiles = Arrays.copyOf(tiles, variableCount * 2);
+                            }
+                            variables[tile] = variableCount;
+                            tiles[variableCount++] = tile;
+                        }
+                        if (end == clueVariables.length) {
+                            clueVariables = Arrays.copyOf(clueVariables, end * 2);
+                        }
+                        clueVariables[end++] = variables[tile];
+                    }
+                }
+            }
+            if (end == start) {
+                return;
+            }
+            if (clueCount + 2 >= clueStarts.length) {
+                clueStarts = Arrays.copyOf(clueStarts, clueStarts.length * 2);
+                needs = Arrays.copyOf(needs, clueStarts.length);
+            }
+            needs[clueCount++] = need;
+            clueStarts[clueCount] = end;
+        }
+
+        /**
+         * Builds clues of variables after all clues were added.
+         */
+        private void finish() {
+            tiles = Arrays.copyOf(tiles, variableCount);
+            final int n = variableCount;
+            variableStarts = new int[n + 1];
+            for (int i = 0; i < clueStarts[clueCount]; i++) {
+                variableStarts[clueVariables[i] + 1]++;
+            }
+            for (int v = 0; v < n; v++) {
+                variableStarts[v + 1] += variableStarts[v];
+            }
+            variableClues = new int[variableStarts[n]];
+            final int[] fill = Arrays.copyOf(variableStarts, n);
+            for (int c = 0; c < clueCount; c++) {
+                for (int i = clueStarts[c]; i < clueStarts[c + 1]; i++) {
+                    final int v = clueVariables[i];
+                    variableClues[fill[v]++] = c;
+                }
+            }
+        }
+    }
+
+    /**
+     * Chain over frontier configurations satisfying all clues. Accumulates
+     * batch means of each variable and of the interior probability, stored
+     * after the variables.
+     */
+    private static final class Chain extends RecursiveAction {
+
+        /**
+         * Frontier.
+         */
+        private final Frontier frontier;
+
+        /**
+         * Random numbers of the chain.
+         */
+        private final Random random;
+
+        /**
+         * Number of interior tiles.
+         */
+        private final int interiorCount;
+
+        /**
+         * Number of unmarked mines.
+         */
+        private final int mines;
+
+        /**
+         * End of burn-in in nanoseconds.
+         */
+        private final long burnInEnd;
+
+        /**
+         * Deadline in nanoseconds.
+         */
+        private final long deadline;
+
+        /**
+         * Sums of batch means.
+         */
+        private final double[] sums;
+
+        /**
+         * Sums of squared batch means.
+         */
+        private final double[] squares;
+
+        /**
+         * Number of batches with samples.
+         */
+        private final int[] batches;
+
+        /**
+         * Number of sampled sweeps.
+         */
+        private long sweeps;
+
+        /**
+         * Value of each variable, 1 for mine.
+         */
+        private byte[] values;
+
+        /**
+         * Mines among variables of each clue, block variables are left out
+         * while the block is resampled.
+         */
+        private int[] clueSums;
+
+        /**
+         * Number of block variables of each clue not assigned yet while the
+         * block is resampled.
+         */
+        private int[] unassigned;
+
+        /**
+         * Number of mines among frontier variables.
+         */
+        private int frontierMines;
+
+        /**
+         * Logarithm of the number of interior placements by frontier mine
+         * count.
+         */
+        private double[] logWeights;
+
+        /**
+         * Clues violated while searching the first configuration.
+         */
+        private int[] violated;
+
+        /**
+         * Number of violated clues.
+         */
+        private int violatedCount;
+
+        /**
+         * Position of each clue in the violated clues, -1 if satisfied.
+         */
+        private int[] violatedPositions;
+
+        /**
+         * Variables of the resampled block.
+         */
+        private final int[] block = new int[MAX_BLOCK];
+
+        /**
+         * Number of variables of the block.
+         */
+        private int blockSize;
+
+        /**
+         * Clues whose variables may join the block, in breadth first order.
+         */
+        private final int[] blockClues = new int[MAX_BLOCK * 8];
+
+        /**
+         * Number of the current step, marks clues and variables of its block.
+         */
+        private int stamp;
+
+        /**
+         * Step in which each clue was queued for the block.
+         */
+        private int[] clueStamps;
+
+        /**
+         * Step in which each variable joined the block.
+         */
+        private int[] variableStamps;
+
+        /**
+         * Frontier mines outside of the block.
+         */
+        private int outsideMines;
+
+        /**
+         * Logarithm of the largest weight reachable by resampling the block.
+         */
+        private double blockScale;
+
+        /**
+         * Nodes left for enumerating assignments of the block.
+         */
+        private int nodesLeft;
+
+        /**
+         * Sum of weights of the enumerated block assignments.
+         */
+        private double totalWeight;
+
+        /**
+         * Block assignment chosen so far, bit i for the i-th block variable.
+         */
+        private int chosen;
+
+        /**
+         * Constructor.
+         *
+         * @param frontier frontier
+         * @param interiorCount number of interior tiles
+         * @param mines number of unmarked mines
+         * @param burnInEnd end of burn-in in nanoseconds
+         * @param deadline deadline in nanoseconds
+         * @param random random numbers of the chain
+         */
+        private Chain(Frontier frontier, int interiorCount, int mines, long burnInEnd, long deadline, Random random) {
+            this.frontier = frontier;
+            this.random = random;
+            this.interiorCount = interiorCount;
+            this.mines = mines;
+            this.burnInEnd = burnInEnd;
+            this.deadline = deadline;
+            sums = new double[frontier.variableCount + 1];
+            squares = new double[frontier.variableCount + 1];
+            batches = new int[frontier.variableCount + 1];
+        }
+
+        @Override
+        protected void compute() {
+            final Frontier f = frontier;
+            final int n = f.variableCount;
+            values = new byte[n];
+            clueSums = new int[f.clueCount];
+            unassigned = new int[f.clueCount];
+            clueStamps = new int[f.clueCount];
+            variableStamps = new int[n];
+            logWeights = logWeights(n);
+            if (!start()) {
+                return;
+            }
+
+            // each variable is resampled about once in a sweep
+            final int sweepSteps = Math.max(1, n / MAX_BLOCK);
+            // mine samples and interior probabilities by batch
+            final int[][] batchCounts = new int[MAX_BATCHES][];
+            final double[] batchInteriors = new double[MAX_BATCHES];
+            int batchCount = 0;
+            int batchLength = 1;
+            int batchSweeps = 0;
+            boolean burnIn = true;
+            for (int sweep = 0;; sweep++) {
+                if (burnIn && (sweep >= BURN_IN_SWEEPS || System.nanoTime() > burnInEnd)) {
+                    burnIn = false;
+                }
+                for (int step = 0; step < sweepSteps; step++) {
+                    if ((step & (CHECK_STEPS - 1)) == 0 && System.nanoTime() > deadline) {
+                        addBatches(batchCounts, batchInteriors, batchCount, batchLength);
+                        return;
+                    }
+                    resample(random.nextInt(f.clueCount));
+                }
+                if (burnIn) {
+                    continue;
+                }
+                if (batchCounts[batchCount] == null) {
+                    batchCounts[batchCount] = new int[n];
+                }
+                final int[] counts = batchCounts[batchCount];
+                for (int v = 0; v < n; v++) {
+                    counts[v] += values[v];
+                }
+                if (interiorCount > 0) {
+                    batchInteriors[batchCount] += (double) (mines - frontierMines) / interiorCount;
+                }
+                sweeps++;
+                if (++batchSweeps == batchLength) {
+                    batchSweeps = 0;
+                    if (++batchCount == MAX_BATCHES) {
+                        mergeBatches(batchCounts, batchInteriors);
+                        batchCount = MAX_BATCHES / 2;
+                        batchLength *= 2;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Finds a random configuration satisfying all clues. Variables start
+         * as mines with the overall mine density, then a variable of a random
+         * violated clue is flipped until no clue is violated. Mostly the flip
+         * reducing violations most is chosen, sometimes a random one, so that
+         * the search does not get stuck.
+         *
+         * @return false if the deadline passed first
+         */
+        private boolean start() {
+            final Frontier f = frontier;
+            final int n = f.variableCount;
+            final double density = (double) mines / (interiorCount + n);
+            for (int v = 0; v < n; v++) {
+                if (random.nextDouble() < density) {
+                    values[v] = 1;
+                    frontierMines++;
+                    for (int i = f.variableStarts[v]; i < f.variableStarts[v + 1]; i++) {
+                        clueSums[f.variableClues[i]]++;
+                    }
+                }
+            }
+            violated = new int[f.clueCount];
+            violatedPositions = new int[f.clueCount];
+            for (int c = 0; c < f.clueCount; c++) {
+                violatedPositions[c] = -1;
+                updateViolated(c);
+            }
+            for (int step = 0; violatedCount > 0; step++) {
+                if ((step & (CHECK_STEPS - 1)) == 0 && System.nanoTime() > deadline) {
+                    return false;
+                }
+                final int c = violated[random.nextInt(violatedCount)];
+                final int start = f.clueStarts[c];
+                final int size = f.clueStarts[c + 1] - start;
+                int best = f.clueVariables[start + random.nextInt(size)];
+                if (random.nextDouble() >= NOISE) {
+                    int bestChange = Integer.MAX_VALUE;
+                    int ties = 0;
+                    for (int j = start; j < start + size; j++) {
+                        final int v = f.clueVariables[j];
+                        final int change = violationChange(v);
+                        if (change < bestChange) {
+                            bestChange = change;
+                            best = v;
+                            ties = 1;
+                        } else if (change == bestChange && random.nextInt(++ties) == 0) {
+                            best = v;
+                        }
+                    }
+                }
+                final int delta = 1 - 2 * values[best];
+                values[best] += delta;
+                frontierMines += delta;
+                for (int i = f.variableStarts[best]; i < f.variableStarts[best + 1]; i++) {
+                    final int clue = f.variableClues[i];
+                    clueSums[clue] += delta;
+                    updateViolated(clue);
+                }
+            }
+            violated = null;
+            violatedPositions = null;
+            return true;
+        }
+
+        /**
+         * Returns change of the number of mines by which clues are violated
+         * if a variable is flipped.
+         *
+         * @param v variable
+         * @return change, negative if the flip reduces violations
+         */
+        private int violationChange(int v) {
+            final Frontier f = frontier;
+            final int delta = 1 - 2 * values[v];
+            int change = 0;
+            for (int i = f.variableStarts[v]; i < f.variableStarts[v + 1]; i++) {
+                final int c = f.variableClues[i];
+                change += Math.abs(clueSums[c] + delta - f.needs[c]) - Math.abs(clueSums[c] - f.needs[c]);
+            }
+            return change;
+        }
+
+        /**
+         * Adds clue to the violated clues or removes it from them.
+         *
+         * @param c clue
+         */
+        private void updateViolated(int c) {
+            final boolean isViolated = clueSums[c] != frontier.needs[c];
+            final int position = violatedPositions[c];
+            if (isViolated && position < 0) {
+                violatedPositions[c] = violatedCount;
+                violated[violatedCount++] = c;
+            } else if (!isViolated && position >= 0) {
+                final int last = violated[--violatedCount];
+                violated[position] = last;
+                violatedPositions[last] = position;
+                violatedPositions[c] = -1;
+            }
+        }
+
+        /**
+         * Resamples variables near a clue from their distribution given all
+         * other variables. The block grows from the clue breadth first by
+         * whole clues. Only assignments satisfying all clues are enumerated,
+         * each weighted by the interior placements of its frontier mine
+         * count. A block with too many assignments is left unchanged, which
+         * depends only on variables outside of it.
+         *
+         * @param clue clue
+         */
+        private void resample(int clue) {
+            final Frontier f = frontier;
+            growBlock(clue);
+            int blockMines = 0;
+            int current = 0;
+            for (int i = 0; i < blockSize; i++) {
+                final int v = block[i];
+                blockMines += values[v];
+                current |= values[v] << i;
+                for (int j = f.variableStarts[v]; j < f.variableStarts[v + 1]; j++) {
+                    final int c = f.variableClues[j];
+                    clueSums[c] -= values[v];
+                    unassigned[c]++;
+                }
+            }
+            outsideMines = frontierMines - blockMines;
+            blockScale = Double.NEGATIVE_INFINITY;
+            for (int k = outsideMines; k <= outsideMines + blockSize; k++) {
+                blockScale = Math.max(blockScale, logWeights[k]);
+            }
+            totalWeight = 0;
+            chosen = current;
+            nodesLeft = MAX_NODES;
+            if (!enumerate(0, 0, 0)) {
+                chosen = current;
+            }
+            frontierMines = outsideMines;
+            for (int i = 0; i < blockSize; i++) {
+                final int v = block[i];
+                values[v] = (byte) (chosen >>> i & 1);
+                frontierMines += values[v];
+                for (int j = f.variableStarts[v]; j < f.variableStarts[v + 1]; j++) {
+                    final int c = f.variableClues[j];
+                    clueSums[c] += values[v];
+                    unassigned[c]--;
+                }
+            }
+        }
+
+        /**
+         * Collects block variables, starting with variables of a clue and
+         * adding clues sharing a variable with the block while they fit.
+         *
+         * @param clue first clue
+         */
+        private void growBlock(int clue) {
+            final Frontier f = frontier;
+            stamp++;
+            blockSize = 0;
+            int queued = 0;
+            blockClues[queued++] = clue;
+            clueStamps[clue] = stamp;
+            for (int head = 0; head < queued; head++) {
+                final int c = blockClues[head];
+                int added = 0;
+                for (int i = f.clueStarts[c]; i < f.clueStarts[c + 1]; i++) {
+                    if (variableStamps[f.clueVariables[i]] != stamp) {
+                        added++;
+                    }
+                }
+                if (blockSize + added > MAX_BLOCK) {
+                    continue;
+                }
+                for (int i = f.clueStarts[c]; i < f.clueStarts[c + 1]; i++) {
+                    final int v = f.clueVariables[i];
+                    if (variableStamps[v] == stamp) {
+                        continue;
+                    }
+                    variableStamps[v] = stamp;
+                    block[blockSize++] = v;
+                    for (int j = f.variableStarts[v]; j < f.variableStarts[v + 1] && queued < blockClues.length; j++) {
+                        final int next = f.variableClues[j];
+                        if (clueStamps[next] != stamp) {
+                            clueStamps[next] = stamp;
+                            blockClues[queued++] = next;
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Enumerates assignments of block variables from a position, chooses
+         * one of the complete ones with probability proportional to its
+         * weight.
+         *
+         * @param position position in the block
+         * @param assignment assignment of earlier block variables
+         * @param blockMines mines of earlier block variables
+         * @return false if the block has too many assignments
+         */
+        private boolean enumerate(int position, int assignment, int blockMines) {
+            if (--nodesLeft < 0) {
+                return false;
+            }
+            if (position == blockSize) {
+                final double weight = Math.exp(logWeights[outsideMines + blockMines] - blockScale);
+                totalWeight += weight;
+                if (weight > 0 && random.nextDouble() * totalWeight < weight) {
+                    chosen = assignment;
+                }
+                return true;
+            }
+            final Frontier f = frontier;
+            final int v = block[position];
+            for (int value = 0; value <= 1; value++) {
+                boolean fits = true;
+                for (int i = f.variableStarts[v]; i < f.variableStarts[v + 1] && fits; i++) {
+                    final int c = f.variableClues[i];
+                    final int sum = clueSums[c] + value;
+                    fits = sum <= f.needs[c] && sum + unassigned[c] - 1 >= f.needs[c];
+                }
+                if (!fits) {
+                    continue;
+                }
+                for (int i = f.variableStarts[v]; i < f.variableStarts[v + 1]; i++) {
+                    clueSums[f.variableClues[i]] += value;
+                    unassigned[f.variableClues[i]]--;
+                }
+                final boolean complete = enumerate(position + 1, assignment | value << position, blockMines + value);
+                for (int i = f.variableStarts[v]; i < f.variableStarts[v + 1]; i++) {
+                    clueSums[f.variableClues[i]] -= value;
+                    unassigned[f.variableClues[i]]++;
+                }
+                if (!complete) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Merges full batches in pairs, the second half of batches is empty
+         * afterwards.
+         *
+         * @param batchCounts mine samples of each variable by batch
+         * @param batchInteriors sums of interior probabilities by batch
+         */
+        private void mergeBatches(int[][] batchCounts, double[] batchInteriors) {
+            final int n = frontier.variableCount;
+            for (int i = 0; i < MAX_BATCHES / 2; i++) {
+                final int[] merged = batchCounts[2 * i];
+                final int[] other = batchCounts[2 * i + 1];
+                for (int v = 0; v < n; v++) {
+                    merged[v] += other[v];
+                }
+                batchCounts[i] = merged;
+                batchInteriors[i] = batchInteriors[2 * i] + batchInteriors[2 * i + 1];
+            }
+            for (int i = MAX_BATCHES / 2; i < MAX_BATCHES; i++) {
+                batchCounts[i] = null;
+                batchInteriors[i] = 0;
+            }
+        }
+
+        /**
+         * Adds means of full batches, the unfinished batch is left out.
+         *
+         * @param batchCounts mine samples of each variable by batch
+         * @param batchInteriors sums of interior probabilities by batch
+         * @param batchCount number of full batches
+         * @param batchLength number of sweeps of a batch
+         */
+        private void addBatches(int[][] batchCounts, double[] batchInteriors, int batchCount, int batchLength) {
+            final int n = frontier.variableCount;
+            for (int b = 0; b < batchCount; b++) {
+                for (int v = 0; v < n; v++) {
+                    final double mean = (double) batchCounts[b][v] / batchLength;
+                    sums[v] += mean;
+                    squares[v] += mean * mean;
+                    batches[v]++;
+                }
+                final double mean = batchInteriors[b] / batchLength;
+                sums[n] += mean;
+                squares[n] += mean * mean;
+                batches[n]++;
+            }
+        }
+
+        /**
+         * Returns logarithm of the number of interior placements for each
+         * frontier mine count, negative infinity for impossible counts.
+         *
+         * @param n number of frontier tiles
+         * @return weights indexed by frontier mine count
+         */
+        private double[] logWeights(int n) {
+            final double[] logFactorials = new double[interiorCount + 1];
+            for (int i = 1; i <= interiorCount; i++) {
+                logFactorials[i] = logFactorials[i - 1] + Math.log(i);
+            }
+            final double[] weights = new double[n + 1];
+            for (int k = 0; k <= n; k++) {
+                final int rest = mines - k;
+                if (rest >= 0 && rest <= interiorCount) {
+                    weights[k] = logFactorials[interiorCount] - logFactorials[rest] - logFactorials[interiorCount - rest];
+                } else {
+                    weights[k] = Double.NEGATIVE_INFINITY;
+                }
+            }
+            return weights;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package minesweeper.solver;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import minesweeper.core.ChangeSet;
+import minesweeper.core.Field;
+import minesweeper.core.GameState;
+import minesweeper.core.Tile;
+
+/**
+ * Generator of fields which can be solved without guessing from a given first
+ * click.
+ * <p>
+ * Candidate layouts keep the first click and its neighbours free of mines.
+ * Each core takes candidates in turn and plays them with {@link Solver} from
+ * the first click, a candidate passes if the solver opens all safe tiles.
+ * The winning candidate is generated again from its seed, closed. The passing
+ * candidate with the lowest number wins, so the result depends only on the
+ * seed, not on the number of cores. When the timeout expires first, the
+ * candidate on which the solver got farthest is returned and
+ * {@link #isGuaranteed()} reports that it may need a guess, the caller decides
+ * whether to use it.
+ */
+public final class NoGuessGenerator {
+
+    /**
+     * Added to the seed for each candidate.
+     */
+    private static final long SEED_STEP = 0x9e3779b97f4a7c15L;
+
+    /**
+     * Row count.
+     */
+    private final int rowCount;
+
+    /**
+     * Column count.
+     */
+    private final int columnCount;
+
+    /**
+     * Mine count.
+     */
+    private final int mineCount;
+
+    /**
+     * True if the last generated field can be solved without guessing.
+     */
+    private boolean guaranteed;
+
+    /**
+     * Number of candidates tried by the last generation.
+     */
+    private int candidateCount;
+
+    /**
+     * Constructor.
+     *
+     * @param rowCount row count
+     * @param columnCount column count
+     * @param mineCount mine count
+     */
+    public NoGuessGenerator(int rowCount, int columnCount, int mineCount) {
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        this.mineCount = mineCount;
+    }
+
+    /**
+     * Returns true if the last generated field can be solved without
+     * guessing, false if the timeout expired first.
+     *
+     * @return true if no guess is needed
+     */
+    public boolean isGuaranteed() {
+        return guaranteed;
+    }
+
+    /**
+     * Returns number of candidates tried by the last generation.
+     *
+     * @return candidate count
+     */
+    public int getCandidateCount() {
+        return candidateCount;
+    }
+
+    /**
+     * Generates field which can be solved without guessing after opening the
+     * given tile. All tiles of the returned field are closed.
+     *
+     * @param row row number of the first click
+     * @param column column number of the first click
+     * @param seed seed of the candidates
+     * @param timeoutMillis time after which the best candidate is returned
+     * @return new field, see {@link #isGuaranteed()} whether it can be
+     * solved without guessing
+     */
+    public Field generate(int row, int column, long seed, long timeoutMillis) {
+        final Search search = new Search(row, column, seed, System.nanoTime() + timeoutMillis * 1000000L);
+        final Worker[] workers = new Worker[Runtime.getRuntime().availableProcessors()];
+        final ForkJoinPool pool = ProbabilityEngine.sharedPool();
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(search);
+            pool.execute(workers[i]);
+        }
+        for (Worker worker : workers) {
+            worker.join();
+        }
+        guaranteed = search.winner != Integer.MAX_VALUE;
+        candidateCount = search.tried;
+        return search.candidate(guaranteed ? search.winner : search.best);
+    }
+
+    /**
+     * Returns number of safe tiles opened by the solver on a candidate.
+     *
+     * @param game candidate
+     * @param row row number of the first click
+     * @param column column number of the first click
+     * @return number of open tiles
+     */
+    private static int play(Field game, int row, int column) {
+        final Solver solver = new Solver(game);
+        solver.update(game.openTile(row, column));
+        while (game.getState() == GameState.PLAYING) {
+            final int index = solver.nextSafeTile();
+            if (index < 0) {
+                break;
+            }
+            final ChangeSet changes = game.openTile(index / game.getColumnCount(), index % game.getColumnCount());
+            solver.update(changes);
+        }
+        return game.getState() == GameState.SOLVED
+                ? game.getRowCount() * game.getColumnCount() : game.getTileCount(Tile.State.OPEN);
+    }
+
+    /**
+     * State of one generation shared by workers.
+     */
+    private final class Search {
+
+        /**
+         * Row number of the first click.
+         */
+        private final int row;
+
+        /**
+         * Column number of the first click.
+         */
+        private final int column;
+
+        /**
+         * Seed of the candidates.
+         */
+        private final long seed;
+
+        /**
+         * Deadline in nanoseconds.
+         */
+        private final long deadline;
+
+        /**
+         * Number of the next candidate.
+         */
+        private final AtomicInteger next = new AtomicInteger();
+
+        /**
+         * Lowest number of a passing candidate, Integer.MAX_VALUE if none
+         * passed yet.
+         */
+        private volatile int winner = Integer.MAX_VALUE;
+
+        /**
+         * Number of the candidate with most open tiles.
+         */
+        private int best;
+
+        /**
+         * Open tiles of the best candidate.
+         */
+        private int bestOpened = -1;
+
+        /**
+         * Number of tried candidates.
+         */
+        private int tried;
+
+        /**
+         * Constructor.
+         *
+         * @param row row number of the first click
+         * @param column column number of the first click
+         * @param seed seed of the candidates
+         * @param deadline deadline in nanoseconds
+         */
+        private Search(int row, int column, long seed, long deadline) {
+            this.row = row;
+            this.column = column;
+            this.seed = seed;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Creates candidate field.
+         *
+         * @param number candidate number
+         * @return new field
+         */
+        private Field candidate(int number) {
+            return Field.createSafe(rowCount, columnCount, mineCount, seed + number * SEED_STEP, row, column);
+        }
+
+        /**
+         * Records result of a candidate.
+         *
+         * @param number candidate number
+         * @param opened number of open tiles, all tiles if solved
+         */
+        private synchronized void record(int number, int opened) {
+            tried++;
+            if (opened == rowCount * columnCount) {
+                winner = Math.min(winner, number);
+            }
+            if (opened > bestOpened || opened == bestOpened && number < best) {
+                bestOpened = opened;
+                best = number;
+            }
+        }
+    }
+
+    /**
+     * Worker trying candidates until one passes or the deadline expires.
+     * Candidates after a passing one are not tried, lower ones are finished.
+     */
+    private static final class Worker extends RecursiveAction {
+
+        /**
+         * Shared search state.
+         */
+        private final Search search;
+
+        /**
+         * Constructor.
+         *
+         * @param search shared search state
+         */
+        private Worker(Search search) {
+            this.search = search;
+        }
+
+        @Override
+        protected void compute() {
+            while (System.nanoTime() < search.deadline) {
+                final int number = search.next.getAndIncrement();
+                if (number > search.winner) {
+                    return;
+                }
+                search.record(number, play(search.candidate(number), search.row, search.column));
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package minesweeper.solver;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of analysis results keyed by {@link
+ * minesweeper.core.Field#getPositionHash() position hash}. The least recently
+ * used result is dropped when the cache is full. Positions reached again by
+ * replay seeking, snapshots or simulations are then not analysed again.
+ *
+ * @param <V> type of results
+ */
+public final class PositionCache<V> {
+
+    /**
+     * Results in access order.
+     */
+    private final LinkedHashMap<Long, V> results;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity maximum number of results
+     */
+    public PositionCache(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Wrong argument capacity!");
+        }
+        results = new LinkedHashMap<Long, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns result of a position.
+     *
+     * @param positionHash position hash
+     * @return result, null if not cached
+     */
+    public synchronized V get(long positionHash) {
+        return results.get(positionHash);
+    }
+
+    /**
+     * Stores result of a position.
+     *
+     * @param positionHash position hash
+     * @param result result
+     */
+    public synchronized void put(long positionHash, V result) {
+        results.put(positionHash, result);
+    }
+
+    /**
+     * Removes all results.
+     */
+    public synchronized void clear() {
+        results.clear();
+    }
+}
@@ -0,0 +1,828 @@
+package minesweeper.solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import minesweeper.core.Field;
+import minesweeper.core.Tile;
+import minesweeper.core.TileSet;
+
+/**
+ * Exact mine probabilities of closed tiles, computed from what a player sees.
+ * Marked tiles are taken as mines.
+ * <p>
+ * Closed tiles next to open clues form the frontier, which is split into
+ * components not sharing any clue. Configurations of each component are
+ * counted by mine count with memoized backtracking, components are solved in
+ * parallel. Components are then combined with the global mine count, the
+ * remaining mines are spread over the interior tiles, each frontier
+ * configuration is weighted by the number of interior placements.
+ * <p>
+ * Components not solved within the time budget are treated as interior
+ * tiles, the result is then only approximate. Exact results are cached by
+ * position hash, so positions seen again are not solved again.
+ */
+public final class ProbabilityEngine {
+
+    /**
+     * Maximum number of stored counts per component.
+     */
+    private static final int MEMO_LIMIT = 1 << 22;
+
+    /**
+     * Number of cached results.
+     */
+    private static final int CACHE_SIZE = 64;
+
+    /**
+     * Exact results of recent positions.
+     */
+    private static final PositionCache<double[]> CACHE = new PositionCache<double[]>(CACHE_SIZE);
+
+    /**
+     * Pool for solving components, created when first needed.
+     */
+    private static ForkJoinPool pool;
+
+    /**
+     * Field.
+     */
+    private final Field field;
+
+    /**
+     * Row count.
+     */
+    private final int rowCount;
+
+    /**
+     * Column count.
+     */
+    private final int columnCount;
+
+    /**
+     * True if the last computation was exact.
+     */
+    private boolean exact;
+
+    /**
+     * Constructor.
+     *
+     * @param field field
+     */
+    public ProbabilityEngine(Field field) {
+        this.field = field;
+        rowCount = field.getRowCount();
+        columnCount = field.getColumnCount();
+    }
+
+    /**
+     * Returns true if the last computation was exact.
+     *
+     * @return true if all components were solved in time
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Computes mine probability of each tile. Open tiles have probability 0,
+     * marked tiles 1.
+     *
+     * @param budgetMillis time budget of solving components
+     * @return probabilities indexed by {@code row * columnCount + column}
+     */
+    public double[] compute(long budgetMillis) {
+        final long position = field.getPositionHash();
+        final double[] cached = CACHE.get(position);
+        if (cached != null) {
+            exact = true;
+            return cached.clone();
+        }
+        final long deadline = System.nanoTime() + budgetMillis * 1000000L;
+        final int size = rowCount * columnCount;
+        final double[] probabilities = new double[size];
+
+        // constraints of open clues over closed unmarked neighbours, only clues touching unopened tiles matter
+        final boolean[] frontier = new boolean[size];
+        final List<int[]> constraintTiles = new ArrayList<int[]>();
+        final List<Integer> constraintNeeds = new ArrayList<Integer>();
+        final int closedCount = field.getTileCount(Tile.State.CLOSED) + field.getTileCount(Tile.State.QUEST);
+        final int markedCount = field.getTileCount(Tile.State.MARKED);
+        final int[] neighbours = new int[8];
+        int frontierCount = 0;
+        final TileSet activeClues = field.getActiveClues();
+        for (int i = 0; i < activeClues.size(); i++) {
+            final int row = activeClues.get(i) / columnCount;
+            final int column = activeClues.get(i) % columnCount;
+            int need = field.clueAt(row, column);
+            int count = 0;
+            for (int actRow = Math.max(row - 1, 0); actRow <= Math.min(row + 1, rowCount - 1); actRow++) {
+                for (int actColumn = Math.max(column - 1, 0); actColumn <= Math.min(column + 1, columnCount - 1); actColumn++) {
+                    final Tile.State neighbourState = field.stateAt(actRow, actColumn);
+                    if (neighbourState == Tile.State.MARKED) {
+                        need--;
+                    } else if (neighbourState == Tile.State.CLOSED || neighbourState == Tile.State.QUEST) {
+                        neighbours[count++] = actRow * columnCount + actColumn;
+                    }
+                }
+            }
+            if (count > 0) {
+                final int[] tiles = Arrays.copyOf(neighbours, count);
+                for (int tile : tiles) {
+                    if (!frontier[tile]) {
+                        frontier[tile] = true;
+                        probabilities[tile] = -1;
+                        frontierCount++;
+                    }
+                }
+                constraintTiles.add(tiles);
+                constraintNeeds.add(need);
+            }
+        }
+
+        final List<Component> components = split(frontier, constraintTiles, constraintNeeds, deadline);
+        final ForkJoinPool solvers = sharedPool();
+        for (Component component : components) {
+            solvers.execute(component);
+        }
+        for (Component component : components) {
+            component.join();
+        }
+        // tiles of components not solved or not split in time stay -1 and count as interior
+        int interiorCount = closedCount;
+        final List<Component> solved = new ArrayList<Component>();
+        for (Component component : components) {
+            if (component.weights != null) {
+                interiorCount -= component.tiles.length;
+                solved.add(component);
+            }
+        }
+        exact = interiorCount == closedCount - frontierCount;
+        final int mines = field.getMineCount() - markedCount;
+        final double interiorProbability = combine(solved, interiorCount, mines, probabilities, deadline);
+        if (interiorProbability < 0) {
+            // contradicting marks or budget spent, fall back to uniform density
+            exact = false;
+            for (int index = 0; index < size; index++) {
+                final Tile.State state = field.stateAt(index / columnCount, index % columnCount);
+                if (state == Tile.State.CLOSED || state == Tile.State.QUEST) {
+                    probabilities[index] = closedCount == 0 ? 0 : Math.max(0, Math.min(1, (double) mines / closedCount));
+                } else if (state == Tile.State.MARKED) {
+                    probabilities[index] = 1;
+                }
+            }
+            return probabilities;
+        }
+        for (int index = 0; index < size; index++) {
+            if (probabilities[index] == -1) {
+                probabilities[index] = interiorProbability;
+            } else if (!frontier[index]) {
+                final Tile.State state = field.stateAt(index / columnCount, index % columnCount);
+                if (state == Tile.State.CLOSED || state == Tile.State.QUEST) {
+                    probabilities[index] = interiorProbability;
+                } else if (state == Tile.State.MARKED) {
+                    probabilities[index] = 1;
+                }
+            }
+        }
+        if (exact && field.getPositionHash() == position) {
+            CACHE.put(position, probabilities.clone());
+        }
+        return probabilities;
+    }
+
+    /**
+     * Splits frontier into components connected by constraints.
+     *
+     * @param frontier true for frontier tiles
+     * @param constraintTiles tiles of each constraint
+     * @param constraintNeeds mines of each constraint
+     * @param deadline deadline of solving in nanoseconds
+     * @return components, only those split before the deadline
+     */
+    private List<Component> split(boolean[] frontier, List<int[]> constraintTiles, List<Integer> constraintNeeds, long deadline) {
+        final int size = frontier.length;
+        final int[] parent = new int[size];
+        for (int i = 0; i < size; i++) {
+            parent[i] = i;
+        }
+        for (int[] tiles : constraintTiles) {
+            for (int i = 1; i < tiles.length; i++) {
+                final int a = find(parent, tiles[0]);
+                final int b = find(parent, tiles[i]);
+                if (a != b) {
+                    parent[a] = b;
+                }
+            }
+        }
+
+        final Map<Integer, List<Integer>> constraintsByRoot = new HashMap<Integer, List<Integer>>();
+        for (int c = 0; c < constraintTiles.size(); c++) {
+            final int root = find(parent, constraintTiles.get(c)[0]);
+            List<Integer> list = constraintsByRoot.get(root);
+            if (list == null) {
+                list = new ArrayList<Integer>();
+                constraintsByRoot.put(root, list);
+            }
+            list.add(c);
+        }
+        final List<Component> components = new ArrayList<Component>();
+        final int[] order = new int[size];
+        Arrays.fill(order, -1);
+        for (List<Integer> constraints : constraintsByRoot.values()) {
+            if (System.nanoTime() > deadline) {
+                break;
+            }
+            final Map<Integer, List<Integer>> tileConstraints = new HashMap<Integer, List<Integer>>();
+            for (int c : constraints) {
+                for (int tile : constraintTiles.get(c)) {
+                    List<Integer> list = tileConstraints.get(tile);
+                    if (list == null) {
+                        list = new ArrayList<Integer>();
+                        tileConstraints.put(tile, list);
+                    }
+                    list.add(c);
+                }
+            }
+            final int[] tiles = new int[tileConstraints.size()];
+            // starting from a far tile keeps fewer constraints active at once
+            breadthFirst(constraintTiles.get(constraints.get(0))[0], tiles, order, tileConstraints, constraintTiles);
+            for (int tile : tiles) {
+                order[tile] = -1;
+            }
+            breadthFirst(tiles[tiles.length - 1], tiles, order, tileConstraints, constraintTiles);
+            final int[][] vars = new int[constraints.size()][];
+            final int[] needs = new int[constraints.size()];
+            for (int i = 0; i < vars.length; i++) {
+                final int[] constraint = constraintTiles.get(constraints.get(i));
+                vars[i] = new int[constraint.length];
+                for (int j = 0; j < constraint.length; j++) {
+                    vars[i][j] = order[constraint[j]];
+                }
+                Arrays.sort(vars[i]);
+                needs[i] = constraintNeeds.get(constraints.get(i));
+            }
+            components.add(new Component(tiles, vars, needs, deadline));
+        }
+        return components;
+    }
+
+    /**
+     * Numbers tiles of a component in breadth first order.
+     *
+     * @param start first tile
+     * @param tiles tiles to fill in order
+     * @param order number of each tile, -1 for tiles not numbered yet
+     * @param tileConstraints constraints of each tile
+     * @param constraintTiles tiles of each constraint
+     */
+    private static void breadthFirst(int start, int[] tiles, int[] order, Map<Integer, List<Integer>> tileConstraints,
+            List<int[]> constraintTiles) {
+        int count = 0;
+        int head = 0;
+        order[start] = count;
+        tiles[count++] = start;
+        while (head < count) {
+            for (int c : tileConstraints.get(tiles[head++])) {
+                for (int tile : constraintTiles.get(c)) {
+                    if (order[tile] < 0) {
+                        order[tile] = count;
+                        tiles[count++] = tile;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds root of union find set.
+     *
+     * @param parent parents
+     * @param i element
+     * @return root
+     */
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * Combines solved components with the interior. Component weights are
+     * chained from the last component back, so that weights of all other
+     * components are available for each component in linear passes. Chained
+     * weights only cover mine counts between the smallest and the largest
+     * count of the chained components.
+     *
+     * @param components solved components
+     * @param interiorCount number of interior tiles
+     * @param mines number of unmarked mines
+     * @param probabilities probabilities to fill for component tiles
+     * @param deadline deadline in nanoseconds
+     * @return mine probability of interior tiles, -1 if no configuration is
+     * consistent or the deadline passed
+     */
+    private static double combine(List<Component> components, int interiorCount, int mines, double[] probabilities, long deadline) {
+        int low = 0;
+        int high = 0;
+        for (Component component : components) {
+            low += component.minMines;
+            high += component.minMines + component.weights.length - 1;
+        }
+        final double[] interior = interiorWeights(interiorCount, mines, low, high);
+        if (interior == null) {
+            return -1;
+        }
+        final int n = components.size();
+
+        // suffix[i][s]: weight of components i.. and interior when earlier components have s mines above their minimum
+        final double[][] suffix = new double[n + 1][];
+        final double[] suffixScale = new double[n + 1];
+        suffix[n] = interior;
+        for (int i = n - 1; i >= 0; i--) {
+            if (System.nanoTime() > deadline) {
+                return -1;
+            }
+            final double[] weights = components.get(i).weights;
+            final double[] next = suffix[i + 1];
+            final double[] current = new double[next.length - weights.length + 1];
+            for (int s = 0; s < current.length; s++) {
+                double sum = 0;
+                for (int k = 0; k < weights.length; k++) {
+                    sum += weights[k] * next[s + k];
+                }
+                current[s] = sum;
+            }
+            suffixScale[i] = suffixScale[i + 1] + normalize(current);
+            suffix[i] = current;
+        }
+        final double total = suffix[0][0];
+        if (!(total > 0)) {
+            return -1;
+        }
+
+        // prefix: weight of components before i by their mine count above the minimum
+        double[] prefix = {1};
+        double prefixScale = 0;
+        for (int i = 0; i < n; i++) {
+            if (System.nanoTime() > deadline) {
+                return -1;
+            }
+            final Component component = components.get(i);
+            final double[] next = suffix[i + 1];
+            final double factor = Math.exp(prefixScale + suffixScale[i + 1] - suffixScale[0]) / total;
+            final double[] others = new double[component.weights.length];
+            for (int k = 0; k < others.length; k++) {
+                double sum = 0;
+                for (int a = 0; a < prefix.length; a++) {
+                    sum += prefix[a] * next[a + k];
+                }
+                others[k] = sum * factor;
+            }
+            for (int v = 0; v < component.tiles.length; v++) {
+                double probability = 0;
+                for (int k = 0; k < others.length; k++) {
+                    probability += component.tileWeights[v][k] * others[k];
+                }
+                probabilities[component.tiles[v]] = Math.min(1, probability);
+            }
+            final double[] nextPrefix = new double[prefix.length + component.weights.length - 1];
+            for (int a = 0; a < prefix.length; a++) {
+                for (int k = 0; k < component.weights.length; k++) {
+                    nextPrefix[a + k] += prefix[a] * component.weights[k];
+                }
+            }
+            prefixScale += normalize(nextPrefix);
+            prefix = nextPrefix;
+        }
+        if (interiorCount == 0) {
+            return 0;
+        }
+
+        // prefix now weights all components, spread the remaining mines over the interior
+        double weight = 0;
+        double interiorMines = 0;
+        for (int k = 0; k < prefix.length; k++) {
+            weight += prefix[k] * interior[k];
+            interiorMines += prefix[k] * interior[k] * (mines - low - k);
+        }
+        return weight > 0 ? interiorMines / weight / interiorCount : 0;
+    }
+
+    /**
+     * Returns scaled number of interior placements for each frontier mine
+     * count, i.e. binomial coefficient of interior count over remaining
+     * mines.
+     *
+     * @param interiorCount number of interior tiles
+     * @param mines number of unmarked mines
+     * @param low smallest frontier mine count
+     * @param high largest frontier mine count
+     * @return weights indexed by frontier mine count above the smallest, null
+     * if no count fits
+     */
+    private static double[] interiorWeights(int interiorCount, int mines, int low, int high) {
+        final double[] logFactorials = new double[interiorCount + 1];
+        for (int i = 1; i <= interiorCount; i++) {
+            logFactorials[i] = logFactorials[i - 1] + Math.log(i);
+        }
+        final double[] weights = new double[high - low + 1];
+        double max = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < weights.length; k++) {
+            final int rest = mines - low - k;
+            if (rest >= 0 && rest <= interiorCount) {
+                weights[k] = logFactorials[interiorCount] - logFactorials[rest] - logFactorials[interiorCount - rest];
+                max = Math.max(max, weights[k]);
+            }
+        }
+        if (max == Double.NEGATIVE_INFINITY) {
+            return null;
+        }
+        for (int k = 0; k < weights.length; k++) {
+            final int rest = mines - low - k;
+            weights[k] = rest >= 0 && rest <= interiorCount ? Math.exp(weights[k] - max) : 0;
+        }
+        return weights;
+    }
+
+    /**
+     * Divides values by their maximum.
+     *
+     * @param values values
+     * @return natural logarithm of the maximum
+     */
+    private static double normalize(double[] values) {
+        double max = 0;
+        for (double value : values) {
+            max = Math.max(max, value);
+        }
+        if (max == 0) {
+            return 0;
+        }
+        for (int i = 0; i < values.length; i++) {
+            values[i] /= max;
+        }
+        return Math.log(max);
+    }
+
+    /**
+     * Returns pool for solving components, creates it if needed.
+     *
+     * @return shared pool
+     */
+    static synchronized ForkJoinPool sharedPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool();
+        }
+        return pool;
+    }
+
+    /**
+     * Connected part of the frontier. Solving counts its configurations by
+     * mine count, overall and with each tile being a mine.
+     * <p>
+     * Variables are assigned in order. A constraint is active between its
+     * first and last variable, the remaining mines of active constraints form
+     * the state of a position. A forward pass counts assignments of earlier
+     * variables leading to each state, a backward pass counts completions of
+     * each state, both by mine count. Counts of a position are scaled
+     * together to stay in double range.
+     */
+    private static final class Component extends RecursiveAction {
+
+        /**
+         * Flat indices of tiles, variables are numbered in this order.
+         */
+        private final int[] tiles;
+
+        /**
+         * Sorted variables of each constraint.
+         */
+        private final int[][] vars;
+
+        /**
+         * Mines of each constraint.
+         */
+        private final int[] needs;
+
+        /**
+         * Constraints of each variable.
+         */
+        private final int[][] constraintsOf;
+
+        /**
+         * Constraints active at each position, i.e. with variables both
+         * before and from the position.
+         */
+        private final int[][] active;
+
+        /**
+         * Deadline in nanoseconds.
+         */
+        private final long deadline;
+
+        /**
+         * Smallest mine count of a configuration.
+         */
+        private int minMines;
+
+        /**
+         * Scaled configuration count by mine count above the smallest, null
+         * if not solved.
+         */
+        private double[] weights;
+
+        /**
+         * Scaled configuration count with tile being mine, by tile and mine
+         * count above the smallest.
+         */
+        private double[][] tileWeights;
+
+        /**
+         * Constructor.
+         *
+         * @param tiles tiles in variable order
+         * @param vars sorted variables of each constraint
+         * @param needs mines of each constraint
+         * @param deadline deadline in nanoseconds
+         */
+        private Component(int[] tiles, int[][] vars, int[] needs, long deadline) {
+            this.tiles = tiles;
+            this.vars = vars;
+            this.needs = needs;
+            this.deadline = deadline;
+            final int n = tiles.length;
+            final int[] counts = new int[n];
+            final int[] activeCounts = new int[n + 1];
+            for (int[] constraint : vars) {
+                for (int v : constraint) {
+                    counts[v]++;
+                }
+                for (int position = constraint[0] + 1; position <= constraint[constraint.length - 1]; position++) {
+                    activeCounts[position]++;
+                }
+            }
+            constraintsOf = new int[n][];
+            for (int v = 0; v < n; v++) {
+                constraintsOf[v] = new int[counts[v]];
+                counts[v] = 0;
+            }
+            active = new int[n + 1][];
+            for (int position = 0; position <= n; position++) {
+                active[position] = new int[activeCounts[position]];
+                activeCounts[position] = 0;
+            }
+            for (int c = 0; c < vars.length; c++) {
+                final int[] constraint = vars[c];
+                for (int v : constraint) {
+                    constraintsOf[v][counts[v]++] = c;
+                }
+                for (int position = constraint[0] + 1; position <= constraint[constraint.length - 1]; position++) {
+                    active[position][activeCounts[position]++] = c;
+                }
+            }
+        }
+
+        @Override
+        protected void compute() {
+            for (int c = 0; c < vars.length; c++) {
+                if (needs[c] < 0 || needs[c] > vars[c].length) {
+                    // contradicting marks, no configuration
+                    weights = new double[1];
+                    tileWeights = new double[tiles.length][1];
+                    return;
+                }
+            }
+            for (int[] constraints : active) {
+                if (constraints.length > 16) {
+                    // states do not fit a long
+                    return;
+                }
+            }
+            try {
+                solve();
+            } catch (TimeoutException e) {
+                weights = null;
+                tileWeights = null;
+            }
+        }
+
+        /**
+         * Runs forward and backward pass.
+         *
+         * @throws TimeoutException if the deadline passed or the counts
+         * need too much memory
+         */
+        private void solve() throws TimeoutException {
+            final int n = tiles.length;
+            final int[] remaining = new int[vars.length];
+            final List<Map<Long, double[]>> forward = new ArrayList<Map<Long, double[]>>(n + 1);
+            final double[] forwardScale = new double[n + 1];
+            Map<Long, double[]> current = new HashMap<Long, double[]>();
+            current.put(0L, new double[]{1});
+            forward.add(current);
+            long stored = 1;
+            for (int position = 0; position < n; position++) {
+                if (System.nanoTime() > deadline || stored > MEMO_LIMIT) {
+                    throw new TimeoutException();
+                }
+                final Map<Long, double[]> next = new HashMap<Long, double[]>();
+                for (Map.Entry<Long, double[]> entry : current.entrySet()) {
+                    final double[] counts = entry.getValue();
+                    unpack(position, entry.getKey(), remaining);
+                    for (int mine = 0; mine <= 1; mine++) {
+                        final long key = advance(position, mine, remaining);
+                        if (key < 0) {
+                            continue;
+                        }
+                        double[] target = next.get(key);
+                        if (target == null) {
+                            target = new double[position + 2];
+                            next.put(key, target);
+                            stored += position + 2;
+                        }
+                        for (int k = 0; k < counts.length; k++) {
+                            target[k + mine] += counts[k];
+                        }
+                    }
+                }
+                forwardScale[position + 1] = forwardScale[position] + normalize(next.values());
+                forward.add(next);
+                current = next;
+            }
+            final double[] total = current.get(0L);
+            if (total == null) {
+                weights = new double[1];
+                tileWeights = new double[n][1];
+                return;
+            }
+            int low = 0;
+            while (low < n && total[low] == 0) {
+                low++;
+            }
+            int high = n;
+            while (high > low && total[high] == 0) {
+                high--;
+            }
+            if ((long) n * (high - low + 1) > MEMO_LIMIT) {
+                throw new TimeoutException();
+            }
+            final double[][] mineCounts = new double[n][high - low + 1];
+            final double max = Math.log(ProbabilityEngine.max(total));
+
+            Map<Long, double[]> backward = new HashMap<Long, double[]>();
+            backward.put(0L, new double[]{1});
+            double backwardScale = 0;
+            for (int position = n - 1; position >= 0; position--) {
+                if (System.nanoTime() > deadline) {
+                    throw new TimeoutException();
+                }
+                final Map<Long, double[]> previous = new HashMap<Long, double[]>();
+                final double[] mineWeights = mineCounts[position];
+                for (Map.Entry<Long, double[]> entry : forward.get(position).entrySet()) {
+                    final double[] counts = entry.getValue();
+                    unpack(position, entry.getKey(), remaining);
+                    double[] completions = null;
+                    for (int mine = 0; mine <= 1; mine++) {
+                        final long key = advance(position, mine, remaining);
+                        final double[] rest = key < 0 ? null : backward.get(key);
+                        if (rest == null) {
+                            continue;
+                        }
+                        if (completions == null) {
+                            completions = new double[n - position + 1];
+                        }
+                        for (int k = 0; k < rest.length; k++) {
+                            completions[k + mine] += rest[k];
+                        }
+                        if (mine == 1) {
+                            for (int a = 0; a < counts.length; a++) {
+                                if (counts[a] != 0) {
+                                    for (int k = Math.max(0, low - a - 1); k < rest.length && a + k < high; k++) {
+                                        mineWeights[a + k + 1 - low] += counts[a] * rest[k];
+                                    }
+                                }
+                            }
+                        }
+                    }
+                    if (completions != null) {
+                        previous.put(entry.getKey(), completions);
+                    }
+                }
+                final double factor = Math.exp(forwardScale[position] + backwardScale - forwardScale[n] - max);
+                for (int k = 0; k < mineWeights.length; k++) {
+                    mineWeights[k] *= factor;
+                }
+                backwardScale += normalize(previous.values());
+                backward = previous;
+                forward.set(position, null);
+            }
+            final double[] counts = new double[high - low + 1];
+            for (int k = 0; k < counts.length; k++) {
+                counts[k] = Math.exp(Math.log(total[low + k]) - max);
+            }
+            minMines = low;
+            tileWeights = mineCounts;
+            weights = counts;
+        }
+
+        /**
+         * Reads remaining mines of constraints active at a position from a
+         * state.
+         *
+         * @param position position
+         * @param key packed state
+         * @param remaining remaining mines indexed by constraint
+         */
+        private void unpack(int position, long key, int[] remaining) {
+            final int[] constraints = active[position];
+            for (int i = constraints.length - 1; i >= 0; i--) {
+                remaining[constraints[i]] = (int) (key & 15);
+                key >>>= 4;
+            }
+        }
+
+        /**
+         * Assigns variable at a position and returns the next state.
+         * Constraints starting at the position get their full need.
+         *
+         * @param position position
+         * @param mine 1 if the variable is mine
+         * @param remaining remaining mines of the state, kept unchanged
+         * @return packed next state, -1 if the assignment is inconsistent
+         */
+        private long advance(int position, int mine, int[] remaining) {
+            for (int c : constraintsOf[position]) {
+                final int[] constraint = vars[c];
+                final int before = constraint[0] == position ? needs[c] : remaining[c];
+                final int left = before - mine;
+                int later = 0;
+                while (constraint[constraint.length - 1 - later] > position) {
+                    later++;
+                }
+                if (left < 0 || left > later) {
+                    return -1;
+                }
+            }
+            long key = 0;
+            for (int c : active[position + 1]) {
+                int value = vars[c][0] == position ? needs[c] : remaining[c];
+                for (int v : vars[c]) {
+                    if (v == position) {
+                        value -= mine;
+                    }
+                }
+                key = key << 4 | value;
+            }
+            return key;
+        }
+
+        /**
+         * Divides counts of a position by their maximum.
+         *
+         * @param values counts
+         * @return natural logarithm of the maximum
+         */
+        private static double normalize(Iterable<double[]> values) {
+            double max = 0;
+            for (double[] counts : values) {
+                max = Math.max(max, ProbabilityEngine.max(counts));
+            }
+            if (max == 0) {
+                return 0;
+            }
+            for (double[] counts : values) {
+                for (int k = 0; k < counts.length; k++) {
+                    counts[k] /= max;
+                }
+            }
+            return Math.log(max);
+        }
+    }
+
+    /**
+     * Returns maximum of values.
+     *
+     * @param values values
+     * @return maximum, at least 0
+     */
+    private static double max(double[] values) {
+        double max = 0;
+        for (double value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    /**
+     * Thrown when the time budget is exhausted.
+     */
+    private static final class TimeoutException extends Exception {
+    }
+}
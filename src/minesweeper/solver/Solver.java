@@ -0,0 +1,401 @@
+package minesweeper.solver;
+
+import java.util.Arrays;
+import minesweeper.core.ChangeSet;
+import minesweeper.core.Field;
+import minesweeper.core.Tile;
+
+/**
+ * Deterministic solver finding tiles which are certainly safe or certainly
+ * mines. It sees only what a player sees: clues of open tiles and marks.
+ * Marked tiles are taken as mines.
+ * <p>
+ * Every open clue with closed unknown neighbours is a constraint: its unknown
+ * neighbours hold the clue minus known mines. Unknown neighbours are kept as
+ * a 49 bit mask of the 7x7 window centred on the clue, so constraints of
+ * clues at most two tiles apart are compared by shifting one mask. Single
+ * constraints are solved when their mines are zero or fill all unknowns,
+ * pairs when the mines one constraint has outside the other fill its
+ * outside tiles.
+ * <p>
+ * The solver is incremental: {@link #update(ChangeSet)} re-examines only the
+ * constraints around changed tiles.
+ */
+public final class Solver {
+
+    /**
+     * Unknown tile.
+     */
+    private static final byte UNKNOWN = 0;
+
+    /**
+     * Tile known to be safe.
+     */
+    private static final byte SAFE = 1;
+
+    /**
+     * Tile known to be mine.
+     */
+    private static final byte MINE = 2;
+
+    /**
+     * Visible value of a closed tile.
+     */
+    private static final byte CLOSED_TILE = -1;
+
+    /**
+     * Visible value of a marked tile.
+     */
+    private static final byte MARKED_TILE = -2;
+
+    /**
+     * Width of the window.
+     */
+    private static final int WINDOW = 7;
+
+    /**
+     * Bit of the centre of the window.
+     */
+    private static final int CENTRE = WINDOW * WINDOW / 2;
+
+    /**
+     * Solved field.
+     */
+    private final Field field;
+
+    /**
+     * Row count.
+     */
+    private final int rowCount;
+
+    /**
+     * Column count.
+     */
+    private final int columnCount;
+
+    /**
+     * What the player sees on each tile: clue of open tiles, CLOSED_TILE or
+     * MARKED_TILE.
+     */
+    private final byte[] visible;
+
+    /**
+     * Knowledge of each tile.
+     */
+    private final byte[] known;
+
+    /**
+     * Unknown neighbours of each open clue as window mask, 0 if the tile is
+     * no constraint.
+     */
+    private final long[] masks;
+
+    /**
+     * Mines among unknown neighbours of each constraint.
+     */
+    private final byte[] needs;
+
+    /**
+     * Constraints waiting to be examined.
+     */
+    private int[] queue;
+
+    /**
+     * Number of queued constraints.
+     */
+    private int queueSize;
+
+    /**
+     * True for queued constraints.
+     */
+    private final boolean[] queued;
+
+    /**
+     * Safe tiles found and not yet returned.
+     */
+    private int[] safeTiles = new int[16];
+
+    /**
+     * Number of safe tiles found and not yet returned.
+     */
+    private int safeCount;
+
+    /**
+     * Constructor. Reads all open tiles of the field.
+     *
+     * @param field field
+     */
+    public Solver(Field field) {
+        this.field = field;
+        rowCount = field.getRowCount();
+        columnCount = field.getColumnCount();
+        final int size = rowCount * columnCount;
+        visible = new byte[size];
+        known = new byte[size];
+        masks = new long[size];
+        needs = new byte[size];
+        queued = new boolean[size];
+        queue = new int[64];
+        for (int index = 0; index < size; index++) {
+            see(index);
+        }
+        for (int index = 0; index < size; index++) {
+            if (visible[index] >= 0) {
+                rebuild(index);
+            }
+        }
+    }
+
+    /**
+     * Reads what the player sees on a tile.
+     *
+     * @param index flat index
+     */
+    private void see(int index) {
+        final int row = index / columnCount;
+        final int column = index % columnCount;
+        final Tile.State state = field.stateAt(row, column);
+        if (state == Tile.State.OPEN) {
+            visible[index] = (byte) field.clueAt(row, column);
+            if (known[index] != MINE) {
+                known[index] = SAFE;
+            }
+        } else if (state == Tile.State.MARKED) {
+            visible[index] = MARKED_TILE;
+        } else {
+            visible[index] = CLOSED_TILE;
+        }
+    }
+
+    /**
+     * Takes changed tiles into account. Constraints around them are rebuilt
+     * and queued.
+     *
+     * @param changes tiles changed by a field mutation
+     */
+    public void update(ChangeSet changes) {
+        for (int i = 0; i < changes.size(); i++) {
+            see(changes.getIndex(i));
+            rebuildAround(changes.getRow(i), changes.getColumn(i));
+        }
+    }
+
+    /**
+     * Returns true if the tile is known to be safe.
+     *
+     * @param row row number
+     * @param column column number
+     * @return true if the tile is safe
+     */
+    public boolean isSafe(int row, int column) {
+        solve();
+        return known[row * columnCount + column] == SAFE;
+    }
+
+    /**
+     * Returns true if the tile is known to be mine.
+     *
+     * @param row row number
+     * @param column column number
+     * @return true if the tile is mine
+     */
+    public boolean isMine(int row, int column) {
+        solve();
+        final int index = row * columnCount + column;
+        return known[index] == MINE || visible[index] == MARKED_TILE;
+    }
+
+    /**
+     * Returns a closed tile known to be safe, each tile is returned once.
+     *
+     * @return flat index {@code row * columnCount + column}, -1 if no safe
+     * closed tile is known
+     */
+    public int nextSafeTile() {
+        solve();
+        while (safeCount > 0) {
+            final int index = safeTiles[--safeCount];
+            if (visible[index] == CLOSED_TILE) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns number of tiles known to be mines, marks not counted.
+     *
+     * @return mine count
+     */
+    public int getKnownMineCount() {
+        solve();
+        int count = 0;
+        for (byte knowledge : known) {
+            if (knowledge == MINE) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Examines queued constraints until nothing more can be derived.
+     */
+    public void solve() {
+        while (queueSize > 0) {
+            final int index = queue[--queueSize];
+            queued[index] = false;
+            if (masks[index] != 0) {
+                examine(index);
+            }
+        }
+    }
+
+    /**
+     * Applies single and pair rules to a constraint.
+     *
+     * @param index flat index of the clue
+     */
+    private void examine(int index) {
+        final long mask = masks[index];
+        final int need = needs[index];
+        if (need == 0) {
+            assign(index, mask, SAFE);
+            return;
+        }
+        if (need == Long.bitCount(mask)) {
+            assign(index, mask, MINE);
+            return;
+        }
+        final int row = index / columnCount;
+        final int column = index % columnCount;
+        for (int otherRow = Math.max(row - 2, 0); otherRow <= Math.min(row + 2, rowCount - 1); otherRow++) {
+            for (int otherColumn = Math.max(column - 2, 0); otherColumn <= Math.min(column + 2, columnCount - 1); otherColumn++) {
+                final int other = otherRow * columnCount + otherColumn;
+                if (other == index || masks[other] == 0) {
+                    continue;
+                }
+                // neighbours of the other clue are at most three tiles away, so they fit the window
+                final int shift = (otherRow - row) * WINDOW + otherColumn - column;
+                final long otherMask = shift >= 0 ? masks[other] << shift : masks[other] >>> -shift;
+                if ((otherMask & mask) == 0) {
+                    continue;
+                }
+                final long outside = mask & ~otherMask;
+                final long otherOutside = otherMask & ~mask;
+                if ((outside | otherOutside) == 0) {
+                    continue;
+                }
+                if (need - needs[other] == Long.bitCount(outside)) {
+                    assign(index, outside, MINE);
+                    assign(index, otherOutside, SAFE);
+                    // remaining pairs are examined again with the new masks
+                    enqueue(index);
+                    return;
+                }
+                if (needs[other] - need == Long.bitCount(otherOutside)) {
+                    assign(index, otherOutside, MINE);
+                    assign(index, outside, SAFE);
+                    enqueue(index);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets knowledge of tiles given by a window mask.
+     *
+     * @param index flat index of the window centre
+     * @param mask window mask
+     * @param knowledge new knowledge
+     */
+    private void assign(int index, long mask, byte knowledge) {
+        final int row = index / columnCount;
+        final int column = index % columnCount;
+        while (mask != 0) {
+            final int bit = Long.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+            final int tileRow = row + bit / WINDOW - WINDOW / 2;
+            final int tileColumn = column + bit % WINDOW - WINDOW / 2;
+            final int tile = tileRow * columnCount + tileColumn;
+            if (known[tile] != UNKNOWN) {
+                continue;
+            }
+            known[tile] = knowledge;
+            if (knowledge == SAFE) {
+                if (safeCount == safeTiles.length) {
+                    safeTiles = Arrays.copyOf(safeTiles, safeCount * 2);
+                }
+                safeTiles[safeCount++] = tile;
+            }
+            rebuildAround(tileRow, tileColumn);
+        }
+    }
+
+    /**
+     * Rebuilds constraints of a tile and its neighbours.
+     *
+     * @param row row number
+     * @param column column number
+     */
+    private void rebuildAround(int row, int column) {
+        for (int actRow = Math.max(row - 1, 0); actRow <= Math.min(row + 1, rowCount - 1); actRow++) {
+            for (int actColumn = Math.max(column - 1, 0); actColumn <= Math.min(column + 1, columnCount - 1); actColumn++) {
+                rebuild(actRow * columnCount + actColumn);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds constraint of a tile from its clue and neighbours and queues
+     * it. Tiles which are not open clues have no constraint.
+     *
+     * @param index flat index
+     */
+    private void rebuild(int index) {
+        final int row = index / columnCount;
+        final int column = index % columnCount;
+        masks[index] = 0;
+        if (visible[index] < 0 || known[index] == MINE) {
+            return;
+        }
+        long mask = 0;
+        int need = visible[index];
+        for (int actRow = Math.max(row - 1, 0); actRow <= Math.min(row + 1, rowCount - 1); actRow++) {
+            for (int actColumn = Math.max(column - 1, 0); actColumn <= Math.min(column + 1, columnCount - 1); actColumn++) {
+                final int tile = actRow * columnCount + actColumn;
+                if (tile == index) {
+                    continue;
+                }
+                if (known[tile] == MINE || visible[tile] == MARKED_TILE) {
+                    need--;
+                } else if (known[tile] == UNKNOWN && visible[tile] < 0) {
+                    mask |= 1L << (CENTRE + (actRow - row) * WINDOW + actColumn - column);
+                }
+            }
+        }
+        if (mask == 0 || need < 0 || need > Long.bitCount(mask)) {
+            // no unknown neighbours or contradicting wrong marks
+            return;
+        }
+        masks[index] = mask;
+        needs[index] = (byte) need;
+        enqueue(index);
+    }
+
+    /**
+     * Queues constraint for examination.
+     *
+     * @param index flat index of the clue
+     */
+    private void enqueue(int index) {
+        if (!queued[index]) {
+            queued[index] = true;
+            if (queueSize == queue.length) {
+                queue = Arrays.copyOf(queue, queueSize * 2);
+            }
+            queue[queueSize++] = index;
+        }
+    }
+}
@@ -114,7 +114,11 @@ public class CustomDialog extends javax.swing.JDialog {
             JOptionPane.showMessageDialog(this, "Veľkosť riadka, stĺpca alebo počet mín musí byť väčší ako 0!");
         } else {
             Minesweeper.getInstance().setSetting(new Settings((Integer) jSpinner1.getValue(), (Integer) jSpinner2.getValue(), (Integer) jSpinner3.getValue()));
-            Minesweeper.getInstance().newGame();
+            if (getParent() instanceof SwingUI) {
+                ((SwingUI) getParent()).startNewGame();
+            } else {
+                Minesweeper.getInstance().newGame();
+            }
 
             setVisible(false);
             dispose();
@@ -1,6 +1,7 @@
 package minesweeper.swingui;
 
 import java.awt.Component;
+import java.awt.Cursor;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -9,14 +10,22 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.sql.SQLException;
 import java.util.Formatter;
+import java.util.concurrent.ExecutionException;
+import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JOptionPane;
+import javax.swing.JSlider;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.Timer;
 import javax.swing.UIManager;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import minesweeper.BestTimes;
+import minesweeper.core.ChangeSet;
 import minesweeper.core.Field;
 import minesweeper.Minesweeper;
 import minesweeper.core.GameState;
+import minesweeper.core.ReplayPlayer;
 import minesweeper.Settings;
 import minesweeper.UserInterface;
 
@@ -56,6 +65,32 @@ public class SwingUI extends javax.swing.JFrame implements UserInterface, MouseL
      */
     private final javax.swing.Timer timer;
 
+    /**
+     * Player of the shown replay, null while playing a game
+     */
+    private ReplayPlayer player;
+
+    /**
+     * Timer of the next replay move
+     */
+    private javax.swing.Timer replayTimer;
+
+    /**
+     * Replay playback speed
+     */
+    private double replaySpeed;
+
+    /**
+     * Number of requested new games, a field created for an older request is
+     * dropped
+     */
+    private int newGameRequests;
+
+    /**
+     * Replay position slider, shown only during a replay
+     */
+    private final JSlider seekSlider;
+
     /**
      * Constructor sets private variables, starts timer, initializes components
      * and creates menu.
@@ -81,6 +116,27 @@ public class SwingUI extends javax.swing.JFrame implements UserInterface, MouseL
 
         initComponents();
 
+        seekSlider = new JSlider(0, 0, 0);
+        seekSlider.setVisible(false);
+        seekSlider.addChangeListener(new ChangeListener() {
+            public void stateChanged(ChangeEvent evt) {
+                if (player != null && !seekSlider.getValueIsAdjusting() && seekSlider.getValue() != player.getPosition()) {
+                    seekReplay(seekSlider.getValue());
+                }
+            }
+        });
+        jPanel1.add(seekSlider, java.awt.BorderLayout.SOUTH);
+
+        final JCheckBoxMenuItem noGuessCheckBoxMenu = new JCheckBoxMenuItem("No Guessing Mode");
+        noGuessCheckBoxMenu.setSelected(Minesweeper.getInstance().isNoGuess());
+        noGuessCheckBoxMenu.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent evt) {
+                Minesweeper.getInstance().setNoGuess(noGuessCheckBoxMenu.isSelected());
+                startNewGame();
+            }
+        });
+        gameMenu.insert(noGuessCheckBoxMenu, gameMenu.getPopupMenu().getComponentIndex(beatBestTimeCheckBoxMenu) + 1);
+
         setIconImage(new javax.swing.ImageIcon(getClass().getResource("/img/logo.gif")).getImage());
         setVisible(true);
 
@@ -94,43 +150,153 @@ public class SwingUI extends javax.swing.JFrame implements UserInterface, MouseL
     }
 
     public void newGameStarted(Field field) {
+        player = null;
+        if (replayTimer != null) {
+            replayTimer.stop();
+        }
+        seekSlider.setVisible(false);
         bestTime = bestTimes.selectBestTimeFromDB();
+        showField(field);
+    }
+
+    /**
+     * Starts new game. The field is created on a worker thread, so that
+     * generating a game without guessing does not block the event thread.
+     */
+    void startNewGame() {
+        final int request = ++newGameRequests;
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new SwingWorker<Field, Void>() {
+            @Override
+            protected Field doInBackground() {
+                return Minesweeper.getInstance().createField();
+            }
+
+            @Override
+            protected void done() {
+                if (request != newGameRequests) {
+                    return;
+                }
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    Minesweeper.getInstance().newGame(get());
+                } catch (InterruptedException | ExecutionException e) {
+                    System.out.println("Cant create the game!");
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Creates tile components of a field.
+     *
+     * @param field shown field
+     */
+    private void showField(Field field) {
         this.field = field;
         contentPanel.removeAll();
         newButton.setIcon(new javax.swing.ImageIcon(getClass().getResource("/img/smile.gif")));
         contentPanel.setLayout(new GridLayout(field.getRowCount(), field.getColumnCount()));
         for (int row = 0; row < field.getRowCount(); row++) {
             for (int column = 0; column < field.getColumnCount(); column++) {
-                Component comp = new TileComponent(field.getTile(row, column), row, column);
+                Component comp = new TileComponent(field, row, column);
                 contentPanel.add(comp);
                 comp.addMouseListener(this);
             }
         }
         update();
         pack();
+    }
+
+    /**
+     * Shows recorded game. Clicks play the next move when speed is 0.
+     *
+     * @param player replay player
+     * @param speed playback speed
+     */
+    @Override
+    public void replayStarted(ReplayPlayer player, double speed) {
+        newGameStarted(player.getField());
+        this.player = player;
+        this.replaySpeed = speed;
+        seekSlider.setMaximum(player.getMoveCount());
+        seekSlider.setValue(0);
+        seekSlider.setVisible(true);
+        pack();
+        if (speed > 0) {
+            scheduleReplayMove();
+        }
+    }
 
+    /**
+     * Plays the next replay move and moves the slider.
+     */
+    private void stepReplay() {
+        update(player.step());
+        seekSlider.setValue(player.getPosition());
+    }
+
+    /**
+     * Moves the replay to a position chosen by the slider. Tile components are
+     * created again if seeking replaced the field.
+     *
+     * @param target number of played moves
+     */
+    private void seekReplay(int target) {
+        if (replayTimer != null) {
+            replayTimer.stop();
+        }
+        Field seeked = player.seek(target);
+        if (seeked != field) {
+            showField(seeked);
+        } else {
+            update();
+        }
+        if (replaySpeed > 0) {
+            scheduleReplayMove();
+        }
+    }
+
+    /**
+     * Starts timer of the next replay move.
+     */
+    private void scheduleReplayMove() {
+        if (player.getPosition() == player.getMoveCount()) {
+            return;
+        }
+        replayTimer = new Timer((int) Math.min(Integer.MAX_VALUE, player.getDelayMillis() / replaySpeed), new ActionListener() {
+            public void actionPerformed(ActionEvent evt) {
+                if (player != null) {
+                    stepReplay();
+                    scheduleReplayMove();
+                }
+            }
+        });
+        replayTimer.setRepeats(false);
+        replayTimer.start();
     }
 
     public void mousePressed(MouseEvent e) {
         int m = e.getModifiersEx();
 
+        if (player != null) {
+            if (replaySpeed <= 0 && player.getPosition() < player.getMoveCount()) {
+                stepReplay();
+            }
+            return;
+        }
+
         if (field != null && field.getState() == GameState.PLAYING) {
 
             TileComponent button = (TileComponent) e.getSource();
 
             if ((m & B1ANDB3) == B1ANDB3) {
-                field.openTile(button.getRow(), button.getColumn());
-                update();
-            }
-
-            if (SwingUtilities.isLeftMouseButton(e)) {
-                field.openTile(button.getRow(), button.getColumn());
-                update();
+                update(field.chord(button.getRow(), button.getColumn()));
+            } else if (SwingUtilities.isLeftMouseButton(e)) {
+                update(field.openTile(button.getRow(), button.getColumn()));
             } else if (SwingUtilities.isRightMouseButton(e)) {
 
-                field.markTile(button.getRow(), button.getColumn());
-
-                update();
+                update(field.markTile(button.getRow(), button.getColumn()));
             }
         }
 
@@ -183,9 +349,20 @@ public class SwingUI extends javax.swing.JFrame implements UserInterface, MouseL
             TileComponent component = (TileComponent) contentPanel.getComponent(i);
 
             component.updateStyle();
+        }
+        setMinesLeftLabelText();
+    }
 
-            setMinesLeftLabelText();
+    /**
+     * Updates only tile components changed by the last field mutation.
+     *
+     * @param changes tiles changed by the mutation
+     */
+    private void update(ChangeSet changes) {
+        for (int i = 0; i < changes.size(); i++) {
+            ((TileComponent) contentPanel.getComponent(changes.getIndex(i))).updateStyle();
         }
+        setMinesLeftLabelText();
     }
 
     // <editor-fold defaultstate="collapsed" desc="Generated Code">//GEN-BEGIN:initComponents
@@ -380,32 +557,26 @@ public class SwingUI extends javax.swing.JFrame implements UserInterface, MouseL
 
     private void expertMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_expertMenuItemActionPerformed
         Minesweeper.getInstance().setSetting(Settings.EXPERT);
-        Minesweeper.getInstance().newGame();
+        startNewGame();
     }//GEN-LAST:event_expertMenuItemActionPerformed
 
     private void intermediateMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_intermediateMenuItemActionPerformed
         Minesweeper.getInstance().setSetting(Settings.INTERMEDIATE);
-        Minesweeper.getInstance().newGame();
+        startNewGame();
     }//GEN-LAST:event_intermediateMenuItemActionPerformed
 
     private void beginnerMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_beginnerMenuItemActionPerformed
         Minesweeper.getInstance().setSetting(Settings.BEGINNER);
-        Minesweeper.getInstance().newGame();
+        startNewGame();
     }//GEN-LAST:event_beginnerMenuItemActionPerformed
 
     private void exitMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_exitMenuItemActionPerformed
-                                  
-       /* try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(System.getProperty("user.home") + System.getProperty("file.separator") + "save.settings"))) {
-            oos.writeObject(this.field);
-            oos.close();
-        } catch (Exception e) {
-            System.out.println("Cant save the settings!");
-        }*/
+        Minesweeper.getInstance().saveGame(field);
         System.exit(0);
     }//GEN-LAST:event_exitMenuItemActionPerformed
 
     private void newMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_newMenuItemActionPerformed
-        Minesweeper.getInstance().newGame();
+        startNewGame();
     }//GEN-LAST:event_newMenuItemActionPerformed
 
     private void bestTimesMenuItemActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_bestTimesMenuItemActionPerformed
@@ -6,6 +6,7 @@ import java.awt.Font;
 import javax.swing.ImageIcon;
 import javax.swing.JLabel;
 import minesweeper.core.Clue;
+import minesweeper.core.Field;
 import minesweeper.core.Mine;
 import minesweeper.core.Tile;
 
@@ -45,19 +46,20 @@ public class TileComponent extends JLabel {
     private final int column;
 
     /**
-     * Tile in the field which represents the GUI conponent.
+     * Field whose tile the GUI component represents. Mines are placed by the
+     * first opened tile, so the tile is looked up when needed.
      */
-    private final Tile tile;
+    private final Field field;
 
     /**
      * Constructor.
      *
-     * @param tile tile
+     * @param field field
      * @param row row
      * @param column column
      */
-    public TileComponent(Tile tile, int row, int column) {
-        this.tile = tile;
+    public TileComponent(Field field, int row, int column) {
+        this.field = field;
         this.row = row;
         this.column = column;
         setHorizontalAlignment(javax.swing.SwingConstants.CENTER);
@@ -91,13 +93,14 @@ public class TileComponent extends JLabel {
      * @return associated tile.
      */
     public Tile getTile() {
-        return tile;
+        return field.getTile(row, column);
     }
 
     /**
      * Updates style of the component according to tile.
      */
     public void updateStyle() {
+        final Tile tile = getTile();
         switch (tile.getState()) {
             case OPEN:
                 setBorder(javax.swing.BorderFactory.createBevelBorder(javax.swing.border.BevelBorder.LOWERED));
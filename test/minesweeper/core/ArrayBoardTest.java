@@ -0,0 +1,60 @@
+package minesweeper.core;
+
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests snapshots of array boards.
+ */
+public class ArrayBoardTest {
+
+    /**
+     * Snapshot of a generated board without mines keeps its openings, and one
+     * of a board not generated yet does not see mines placed later.
+     */
+    @Test
+    public void testSnapshotOfGeneratedBoard() {
+        final ArrayBoard empty = new ArrayBoard(8, 8);
+        empty.generate(0, 1);
+        final ArrayBoard copy = empty.snapshot();
+        assertEquals(1, copy.getOpeningCount());
+        assertArrayEquals(empty.getOpeningTiles(), copy.getOpeningTiles());
+
+        final ArrayBoard pending = new ArrayBoard(8, 8);
+        final ArrayBoard before = pending.snapshot();
+        pending.generate(10, 1);
+        assertEquals(0, before.countMines());
+        assertEquals(-1, before.getOpeningCount());
+    }
+
+    /**
+     * Board and its snapshots copy shared pages when they write them, so
+     * writes of one never show on another.
+     */
+    @Test
+    public void testSnapshotPagesAreIndependent() {
+        final ArrayBoard board = new ArrayBoard(100, 100);
+        board.generate(0, 1);
+        board.compareAndSetState(0, Board.CLOSED, Board.OPEN);
+        final ArrayBoard first = board.snapshot();
+        board.compareAndSetState(1, Board.CLOSED, Board.OPEN);
+        final ArrayBoard second = board.snapshot();
+        first.compareAndSetState(2, Board.CLOSED, Board.OPEN);
+        second.compareAndSetState(0, Board.OPEN, Board.MARKED);
+        board.compareAndSetState(5000, Board.CLOSED, Board.OPEN);
+
+        assertEquals(Board.OPEN, board.getState(0));
+        assertEquals(Board.OPEN, board.getState(1));
+        assertEquals(Board.CLOSED, board.getState(2));
+        assertEquals(Board.OPEN, board.getState(5000));
+        assertEquals(Board.OPEN, first.getState(0));
+        assertEquals(Board.CLOSED, first.getState(1));
+        assertEquals(Board.OPEN, first.getState(2));
+        assertEquals(Board.CLOSED, first.getState(5000));
+        assertEquals(Board.MARKED, second.getState(0));
+        assertEquals(Board.OPEN, second.getState(1));
+        assertEquals(Board.CLOSED, second.getState(2));
+        assertEquals(Board.CLOSED, second.getState(5000));
+    }
+}
@@ -0,0 +1,162 @@
+package minesweeper.core;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares opening of zero regions with a recursive reference flood fill,
+ * the behaviour of the original recursive implementation.
+ */
+public class FloodFillTest {
+
+    /**
+     * Random boards are opened and marked tile by tile, after every opening
+     * the tile states must equal those of the reference.
+     */
+    @Test
+    public void testMatchesRecursiveReference() {
+        final Random random = new Random(1);
+        for (int game = 0; game < 2000; game++) {
+            final int rowCount = 5 + random.nextInt(20);
+            final int columnCount = 5 + random.nextInt(20);
+            final Field field = new Field(rowCount, columnCount, 1 + random.nextInt(rowCount * columnCount / 4),
+                    random.nextLong(), random.nextBoolean());
+            while (field.getState() == GameState.PLAYING) {
+                final int row = random.nextInt(rowCount);
+                final int column = random.nextInt(columnCount);
+                if (random.nextInt(8) == 0) {
+                    field.markTile(row, column);
+                    continue;
+                }
+                if (field.stateAt(row, column) != Tile.State.CLOSED
+                        || !field.isPending() && field.isMine(row, column)) {
+                    continue;
+                }
+                final Tile.State[] before = states(field);
+                field.openTile(row, column);
+                final Tile.State[] expected = before.clone();
+                open(field, expected, row, column);
+                final Tile.State[] actual = states(field);
+                for (int index = 0; index < actual.length; index++) {
+                    if (!field.isMine(index / columnCount, index % columnCount)) {
+                        assertEquals("game " + game + " tile " + index, expected[index], actual[index]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Zero region of a big sparse board is opened whole without running out
+     * of stack.
+     */
+    @Test
+    public void testBigRegion() {
+        final Field field = Field.createGenerated(2000, 2000, 1000, 1);
+        final Field shared = Field.createShared(2000, 2000, 1000, 1);
+        int row = 0;
+        while (field.clueAt(row, 0) != 0 || field.isMine(row, 0)) {
+            row++;
+        }
+        field.openTile(row, 0);
+        shared.openTile(row, 0);
+        assertEquals(shared.getTileCount(Tile.State.OPEN), field.getTileCount(Tile.State.OPEN));
+        assertEquals(shared.getPositionHash(), field.getPositionHash());
+        final Tile.State[] expected = new Tile.State[2000 * 2000];
+        Arrays.fill(expected, Tile.State.CLOSED);
+        final int[] stack = new int[expected.length];
+        int size = 0;
+        expected[row * 2000] = Tile.State.OPEN;
+        stack[size++] = row * 2000;
+        while (size > 0) {
+            final int index = stack[--size];
+            for (int actRow = Math.max(index / 2000 - 1, 0); actRow <= Math.min(index / 2000 + 1, 1999); actRow++) {
+                for (int actColumn = Math.max(index % 2000 - 1, 0); actColumn <= Math.min(index % 2000 + 1, 1999); actColumn++) {
+                    final int actIndex = actRow * 2000 + actColumn;
+                    if (expected[actIndex] == Tile.State.CLOSED && !field.isMine(actRow, actColumn)) {
+                        expected[actIndex] = Tile.State.OPEN;
+                        if (field.clueAt(actRow, actColumn) == 0) {
+                            stack[size++] = actIndex;
+                        }
+                    }
+                }
+            }
+        }
+        int open = 0;
+        for (Tile.State state : expected) {
+            if (state == Tile.State.OPEN) {
+                open++;
+            }
+        }
+        assertEquals(open, field.getTileCount(Tile.State.OPEN));
+    }
+
+    /**
+     * Openings labelled when mines are placed open the same tiles as the
+     * flood fill of a shared field.
+     */
+    @Test
+    public void testOpeningsMatchFloodFill() {
+        final Random random = new Random(5);
+        for (int game = 0; game < 300; game++) {
+            final int rowCount = 2 + random.nextInt(40);
+            final int columnCount = 2 + random.nextInt(40);
+            final int mineCount = random.nextInt(rowCount * columnCount / 4 + 1);
+            final long seed = random.nextLong();
+            final Field field = Field.createGenerated(rowCount, columnCount, mineCount, seed);
+            final Field shared = Field.createShared(rowCount, columnCount, mineCount, seed);
+            for (int move = 0; move < 30 && field.getState() == GameState.PLAYING; move++) {
+                final int row = random.nextInt(rowCount);
+                final int column = random.nextInt(columnCount);
+                if (field.isMine(row, column)) {
+                    continue;
+                }
+                field.openTile(row, column);
+                shared.openTile(row, column);
+                assertEquals(Arrays.asList(states(shared)), Arrays.asList(states(field)));
+                assertEquals(shared.getPositionHash(), field.getPositionHash());
+            }
+        }
+    }
+
+    /**
+     * Returns states of all tiles.
+     *
+     * @param field field
+     * @return tile states in flat index order
+     */
+    private static Tile.State[] states(Field field) {
+        final int columnCount = field.getColumnCount();
+        final Tile.State[] states = new Tile.State[field.getRowCount() * columnCount];
+        for (int index = 0; index < states.length; index++) {
+            states[index] = field.stateAt(index / columnCount, index % columnCount);
+        }
+        return states;
+    }
+
+    /**
+     * Reference opening: opens the tile and recursively the closed
+     * neighbours of tiles without adjacent mines.
+     *
+     * @param field field with mines placed
+     * @param states tile states to update
+     * @param row row number
+     * @param column column number
+     */
+    private static void open(Field field, Tile.State[] states, int row, int column) {
+        final int columnCount = field.getColumnCount();
+        states[row * columnCount + column] = Tile.State.OPEN;
+        if (field.isMine(row, column) || field.clueAt(row, column) != 0) {
+            return;
+        }
+        for (int actRow = Math.max(row - 1, 0); actRow <= Math.min(row + 1, field.getRowCount() - 1); actRow++) {
+            for (int actColumn = Math.max(column - 1, 0); actColumn <= Math.min(column + 1, columnCount - 1); actColumn++) {
+                if (states[actRow * columnCount + actColumn] == Tile.State.CLOSED && !field.isMine(actRow, actColumn)) {
+                    open(field, states, actRow, actColumn);
+                }
+            }
+        }
+    }
+}
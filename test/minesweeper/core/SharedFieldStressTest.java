@@ -0,0 +1,294 @@
+package minesweeper.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stress test of a shared field played by many threads at once. Every game
+ * must end exactly once in a state consistent with the board: a solved field
+ * has every safe tile open and no mine open or closed, a failed field shows
+ * an open mine, no closed mine and no marked safe tile.
+ */
+public class SharedFieldStressTest {
+
+    /**
+     * Number of playing threads.
+     */
+    private static final int THREAD_COUNT = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Number of played games per test.
+     */
+    private static final int GAME_COUNT = 300;
+
+    /**
+     * Pool of playing threads.
+     */
+    private static ExecutorService pool;
+
+    /**
+     * Starts the playing threads.
+     */
+    @BeforeClass
+    public static void setUpClass() {
+        pool = Executors.newFixedThreadPool(THREAD_COUNT);
+    }
+
+    /**
+     * Stops the playing threads.
+     */
+    @AfterClass
+    public static void tearDownClass() {
+        pool.shutdown();
+    }
+
+    /**
+     * Players open mostly safe tiles, so games are often solved and failed at
+     * nearly the same time.
+     *
+     * @throws Exception if a player fails
+     */
+    @Test
+    public void testOpeningRace() throws Exception {
+        for (int game = 0; game < GAME_COUNT; game++) {
+            final Field field = Field.createShared(9, 9, 10, game);
+            play(field, game, 0.02, 0.1, 0.05);
+            checkFinished(field);
+        }
+    }
+
+    /**
+     * Players open random tiles of tiny fields, so the last safe tile and the
+     * mine are often opened at the same time.
+     *
+     * @throws Exception if a player fails
+     */
+    @Test
+    public void testSolvingRace() throws Exception {
+        for (int game = 0; game < 50 * GAME_COUNT; game++) {
+            final Field field = Field.createShared(3, 3, 1, game);
+            play(field, game, 1, 0, 0);
+            checkFinished(field);
+        }
+    }
+
+    /**
+     * Players mark and chord a lot, so marks race with the end of the game.
+     *
+     * @throws Exception if a player fails
+     */
+    @Test
+    public void testMarkingRace() throws Exception {
+        for (int game = 0; game < GAME_COUNT; game++) {
+            final Field field = Field.createShared(16, 16, 40, game);
+            play(field, game, 0.01, 0.4, 0.2);
+            checkFinished(field);
+        }
+    }
+
+    /**
+     * Many threads cycle marks on the same tiles, the counters must match the
+     * board when they stop.
+     *
+     * @throws Exception if a player fails
+     */
+    @Test
+    public void testMarkCounters() throws Exception {
+        final Field field = Field.createShared(30, 30, 100, 1);
+        final CyclicBarrier start = new CyclicBarrier(THREAD_COUNT);
+        final List<Future<Void>> players = new ArrayList<>();
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            final Random random = new Random(i);
+            players.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    start.await();
+                    for (int move = 0; move < 20000; move++) {
+                        field.markTile(random.nextInt(30), random.nextInt(30));
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> player : players) {
+            player.get();
+        }
+        checkCounters(field);
+        assertEquals(field.getMineCount() - field.getTileCount(Tile.State.MARKED), field.getRemainingMineCount());
+        assertEquals(GameState.PLAYING, field.getState());
+    }
+
+    /**
+     * Players open safe tiles of a board spanning several frontier stripes,
+     * so cascades meet across stripes. Frontier and active clues must match
+     * the board when they stop.
+     *
+     * @throws Exception if a player fails
+     */
+    @Test
+    public void testFrontierRace() throws Exception {
+        for (int game = 0; game < 20; game++) {
+            final Field field = Field.createShared(200, 200, 4000, game);
+            final CyclicBarrier start = new CyclicBarrier(THREAD_COUNT);
+            final List<Future<Void>> players = new ArrayList<>();
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                final Random random = new Random(game * THREAD_COUNT + i);
+                players.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        for (int move = 0; move < 500; move++) {
+                            final int row = random.nextInt(200);
+                            final int column = random.nextInt(200);
+                            if (random.nextDouble() < 0.1) {
+                                field.markTile(row, column);
+                            } else if (!field.isMine(row, column)) {
+                                field.openTile(row, column);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> player : players) {
+                player.get();
+            }
+            checkFrontier(field);
+        }
+    }
+
+    /**
+     * Plays the field from all threads until the game ends.
+     *
+     * @param field shared field
+     * @param seed seed of the players
+     * @param mineRate probability that a player opens a mine
+     * @param markRate probability of a mark instead of an opening
+     * @param chordRate probability of a chord instead of an opening
+     * @throws Exception if a player fails
+     */
+    private static void play(final Field field, long seed, final double mineRate, final double markRate,
+            final double chordRate) throws Exception {
+        final CyclicBarrier start = new CyclicBarrier(THREAD_COUNT);
+        final List<Future<Void>> players = new ArrayList<>();
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            final Random random = new Random(seed * THREAD_COUNT + i);
+            players.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    start.await();
+                    while (field.getState() == GameState.PLAYING) {
+                        final int row = random.nextInt(field.getRowCount());
+                        final int column = random.nextInt(field.getColumnCount());
+                        final double move = random.nextDouble();
+                        if (move < markRate) {
+                            field.markTile(row, column);
+                        } else if (move < markRate + chordRate) {
+                            field.chord(row, column);
+                        } else if (!field.isMine(row, column) || random.nextDouble() < mineRate) {
+                            field.openTile(row, column);
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> player : players) {
+            player.get();
+        }
+    }
+
+    /**
+     * Checks that the board shows the end of the game.
+     *
+     * @param field finished field
+     */
+    private static void checkFinished(Field field) {
+        final GameState state = field.getState();
+        assertNotEquals(GameState.PLAYING, state);
+        int openMines = 0;
+        for (int row = 0; row < field.getRowCount(); row++) {
+            for (int column = 0; column < field.getColumnCount(); column++) {
+                final Tile.State tile = field.stateAt(row, column);
+                if (field.isMine(row, column)) {
+                    if (state == GameState.SOLVED) {
+                        assertTrue("mine of solved field", tile == Tile.State.MARKED || tile == Tile.State.QUEST);
+                    } else {
+                        assertNotEquals("mine of failed field", Tile.State.CLOSED, tile);
+                    }
+                    if (tile == Tile.State.OPEN) {
+                        openMines++;
+                    }
+                } else if (state == GameState.SOLVED) {
+                    assertEquals("safe tile of solved field", Tile.State.OPEN, tile);
+                } else {
+                    assertNotEquals("safe tile of failed field", Tile.State.MARKED, tile);
+                }
+            }
+        }
+        if (state == GameState.FAILED) {
+            assertTrue("open mine of failed field", openMines > 0);
+        }
+        checkCounters(field);
+    }
+
+    /**
+     * Checks that frontier tiles and active clues match the board.
+     *
+     * @param field field
+     */
+    private static void checkFrontier(Field field) {
+        final TileSet frontier = field.getFrontier();
+        final TileSet activeClues = field.getActiveClues();
+        final int columnCount = field.getColumnCount();
+        for (int row = 0; row < field.getRowCount(); row++) {
+            for (int column = 0; column < columnCount; column++) {
+                boolean openClue = false;
+                boolean unopened = false;
+                for (int actRow = Math.max(row - 1, 0); actRow <= Math.min(row + 1, field.getRowCount() - 1); actRow++) {
+                    for (int actColumn = Math.max(column - 1, 0); actColumn <= Math.min(column + 1, columnCount - 1); actColumn++) {
+                        if (field.stateAt(actRow, actColumn) != Tile.State.OPEN) {
+                            unopened = true;
+                        } else if (!field.isMine(actRow, actColumn)) {
+                            openClue = true;
+                        }
+                    }
+                }
+                final boolean open = field.stateAt(row, column) == Tile.State.OPEN;
+                final int index = row * columnCount + column;
+                assertEquals("frontier " + index, !open && openClue, frontier.contains(index));
+                assertEquals("active clue " + index, open && !field.isMine(row, column) && unopened,
+                        activeClues.contains(index));
+            }
+        }
+    }
+
+    /**
+     * Checks that tile counters match the board.
+     *
+     * @param field field
+     */
+    private static void checkCounters(Field field) {
+        final int[] counts = new int[Tile.State.values().length];
+        for (int row = 0; row < field.getRowCount(); row++) {
+            for (int column = 0; column < field.getColumnCount(); column++) {
+                counts[field.stateAt(row, column).ordinal()]++;
+            }
+        }
+        for (Tile.State state : Tile.State.values()) {
+            assertEquals(state.name(), counts[state.ordinal()], field.getTileCount(state));
+        }
+    }
+}
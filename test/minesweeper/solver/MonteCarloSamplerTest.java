@@ -0,0 +1,83 @@
+package minesweeper.solver;
+
+import java.util.Random;
+import minesweeper.core.Field;
+import minesweeper.core.GameState;
+import minesweeper.core.Tile;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares sampled mine probabilities with exact ones of
+ * {@link ProbabilityEngine} on intermediate boards.
+ */
+public class MonteCarloSamplerTest {
+
+    /**
+     * Time budget of sampling one position in milliseconds.
+     */
+    private static final long BUDGET_MILLIS = 150;
+
+    /**
+     * Largest allowed difference of a probability in any case.
+     */
+    private static final double TOLERANCE = 0.1;
+
+    /**
+     * Rounding error allowed for probabilities without any spread.
+     */
+    private static final double EXACT = 1e-9;
+
+    /**
+     * Estimates lie within their confidence intervals, apart from the few
+     * outside of a 95% interval by chance, and tiles sampled without any
+     * spread are exact.
+     */
+    @Test
+    public void testMatchesProbabilityEngine() {
+        final Random random = new Random(11);
+        int boards = 0;
+        int tiles = 0;
+        int inside = 0;
+        for (int game = 0; game < 30; game++) {
+            final Field field = new Field(16, 16, 40, game + 1);
+            for (int move = 0; move < 4 && field.getState() == GameState.PLAYING; move++) {
+                final int row = random.nextInt(16);
+                final int column = random.nextInt(16);
+                if (!field.isMine(row, column)) {
+                    field.openTile(row, column);
+                }
+            }
+            if (field.getState() != GameState.PLAYING) {
+                continue;
+            }
+            final ProbabilityEngine engine = new ProbabilityEngine(field);
+            final double[] expected = engine.compute(10000);
+            if (!engine.isExact()) {
+                continue;
+            }
+            final MonteCarloSampler sampler = new MonteCarloSampler(field, game);
+            final double[] probabilities = sampler.compute(BUDGET_MILLIS);
+            final double[] intervals = sampler.getIntervals();
+            assertTrue(sampler.getSampleCount() > 0);
+            for (int index = 0; index < expected.length; index++) {
+                if (field.stateAt(index / 16, index % 16) != Tile.State.CLOSED) {
+                    continue;
+                }
+                final double error = Math.abs(expected[index] - probabilities[index]);
+                assertEquals("game " + game + " tile " + index, expected[index], probabilities[index], TOLERANCE);
+                if (intervals[index] == 0) {
+                    assertEquals("game " + game + " tile " + index, expected[index], probabilities[index], EXACT);
+                }
+                tiles++;
+                if (error <= intervals[index] + EXACT) {
+                    inside++;
+                }
+            }
+            boards++;
+        }
+        assertTrue(boards > 10);
+        assertTrue(inside + " of " + tiles, inside >= 0.9 * tiles);
+    }
+}
@@ -0,0 +1,192 @@
+package minesweeper.solver;
+
+import java.util.Random;
+import minesweeper.core.Field;
+import minesweeper.core.GameState;
+import minesweeper.core.Tile;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares mine probabilities with brute force enumeration of all mine
+ * layouts on small boards.
+ */
+public class ProbabilityEngineTest {
+
+    /**
+     * Allowed difference of probabilities.
+     */
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * Probabilities of random positions equal the brute force ones.
+     */
+    @Test
+    public void testMatchesBruteForce() {
+        final Random random = new Random(7);
+        int boards = 0;
+        for (int game = 0; game < 400; game++) {
+            final int rowCount = 4 + random.nextInt(3);
+            final int columnCount = 4 + random.nextInt(3);
+            final Field field = new Field(rowCount, columnCount, 3 + random.nextInt(5), game + 1);
+            final int openings = 1 + random.nextInt(4);
+            for (int move = 0; move < openings && field.getState() == GameState.PLAYING; move++) {
+                final int row = random.nextInt(rowCount);
+                final int column = random.nextInt(columnCount);
+                if (!field.isMine(row, column)) {
+                    field.openTile(row, column);
+                }
+                final int markRow = random.nextInt(rowCount);
+                final int markColumn = random.nextInt(columnCount);
+                if (random.nextInt(4) == 0 && field.isMine(markRow, markColumn)
+                        && field.stateAt(markRow, markColumn) == Tile.State.CLOSED) {
+                    field.markTile(markRow, markColumn);
+                }
+            }
+            if (field.getState() != GameState.PLAYING) {
+                continue;
+            }
+            final ProbabilityEngine engine = new ProbabilityEngine(field);
+            final double[] probabilities = engine.compute(10000);
+            assertTrue(engine.isExact());
+            final double[] expected = new BruteForce(field).probabilities();
+            for (int index = 0; index < expected.length; index++) {
+                assertEquals("game " + game + " tile " + index, expected[index], probabilities[index], EPSILON);
+            }
+            boards++;
+        }
+        assertTrue(boards > 300);
+    }
+
+    /**
+     * Enumerates every layout of the remaining mines over the closed tiles
+     * and counts those agreeing with all open clues.
+     */
+    static final class BruteForce {
+
+        /**
+         * Enumerated field.
+         */
+        private final Field field;
+
+        /**
+         * Flat indices of closed tiles.
+         */
+        private final int[] closed;
+
+        /**
+         * 1 for tiles holding a mine in the current layout, marks included.
+         */
+        private final int[] mines;
+
+        /**
+         * Layouts with a mine on each tile.
+         */
+        private final double[] counts;
+
+        /**
+         * Number of consistent layouts.
+         */
+        private double total;
+
+        /**
+         * Constructor.
+         *
+         * @param field field, marks must be right
+         */
+        BruteForce(Field field) {
+            this.field = field;
+            final int size = field.getRowCount() * field.getColumnCount();
+            mines = new int[size];
+            counts = new double[size];
+            closed = new int[field.getTileCount(Tile.State.CLOSED)];
+            int count = 0;
+            for (int index = 0; index < size; index++) {
+                final Tile.State state = stateAt(index);
+                if (state == Tile.State.CLOSED) {
+                    closed[count++] = index;
+                } else if (state == Tile.State.MARKED) {
+                    mines[index] = 1;
+                }
+            }
+        }
+
+        /**
+         * Returns mine probability of every tile, 1 for marked tiles and 0 for
+         * open ones.
+         *
+         * @return probabilities in flat index order
+         */
+        double[] probabilities() {
+            enumerate(0, field.getMineCount() - field.getTileCount(Tile.State.MARKED));
+            final double[] probabilities = new double[counts.length];
+            for (int index = 0; index < counts.length; index++) {
+                probabilities[index] = stateAt(index) == Tile.State.MARKED ? 1 : counts[index] / total;
+            }
+            return probabilities;
+        }
+
+        /**
+         * Places remaining mines on closed tiles from i on.
+         *
+         * @param i position in closed tiles
+         * @param left mines left to place
+         */
+        private void enumerate(int i, int left) {
+            if (left < 0 || left > closed.length - i) {
+                return;
+            }
+            if (i == closed.length) {
+                if (consistent()) {
+                    total++;
+                    for (int index : closed) {
+                        counts[index] += mines[index];
+                    }
+                }
+                return;
+            }
+            enumerate(i + 1, left);
+            mines[closed[i]] = 1;
+            enumerate(i + 1, left - 1);
+            mines[closed[i]] = 0;
+        }
+
+        /**
+         * Returns true if the current layout agrees with all open clues.
+         *
+         * @return true for consistent layouts
+         */
+        private boolean consistent() {
+            final int rowCount = field.getRowCount();
+            final int columnCount = field.getColumnCount();
+            for (int index = 0; index < mines.length; index++) {
+                if (stateAt(index) != Tile.State.OPEN) {
+                    continue;
+                }
+                final int row = index / columnCount;
+                final int column = index % columnCount;
+                int sum = 0;
+                for (int actRow = Math.max(row - 1, 0); actRow <= Math.min(row + 1, rowCount - 1); actRow++) {
+                    for (int actColumn = Math.max(column - 1, 0); actColumn <= Math.min(column + 1, columnCount - 1); actColumn++) {
+                        sum += mines[actRow * columnCount + actColumn];
+                    }
+                }
+                if (sum != field.clueAt(row, column)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns state of tile at flat index.
+         *
+         * @param index flat index
+         * @return tile state
+         */
+        private Tile.State stateAt(int index) {
+            return field.stateAt(index / field.getColumnCount(), index % field.getColumnCount());
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package minesweeper.solver;
+
+import java.util.Random;
+import minesweeper.core.ChangeSet;
+import minesweeper.core.Field;
+import minesweeper.core.GameState;
+import minesweeper.core.Tile;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the solver is sound: it never takes a safe tile for a mine nor
+ * a mine for a safe tile, so playing its moves never opens a mine.
+ */
+public class SolverTest {
+
+    /**
+     * Plays games with the solver, marking its mines and opening its safe
+     * tiles, and checks every deduction against the board.
+     */
+    @Test
+    public void testSound() {
+        final Random random = new Random(4);
+        final int[][] settings = {{9, 9, 10}, {16, 16, 40}, {16, 30, 99}, {30, 30, 250}};
+        for (int game = 0; game < 1000; game++) {
+            final int[] setting = settings[game % settings.length];
+            final int rowCount = setting[0];
+            final int columnCount = setting[1];
+            final Field field = new Field(rowCount, columnCount, setting[2], game);
+            final Solver solver = new Solver(field);
+            solver.update(field.openTile(random.nextInt(rowCount), random.nextInt(columnCount)));
+            while (field.getState() == GameState.PLAYING) {
+                checkKnowledge(field, solver);
+                final int index = solver.nextSafeTile();
+                if (index < 0) {
+                    break;
+                }
+                final int row = index / columnCount;
+                final int column = index % columnCount;
+                assertFalse("game " + game + " safe tile " + index + " is a mine", field.isMine(row, column));
+                final ChangeSet changes = field.openTile(row, column);
+                solver.update(changes);
+                markMines(field, solver);
+            }
+            assertTrue(field.getState() != GameState.FAILED);
+        }
+    }
+
+    /**
+     * Incremental updates know the same tiles as a solver built on the final
+     * position.
+     */
+    @Test
+    public void testIncrementalMatchesFresh() {
+        final Random random = new Random(9);
+        for (int game = 0; game < 300; game++) {
+            final Field field = new Field(16, 30, 99, game);
+            final Solver solver = new Solver(field);
+            solver.update(field.openTile(random.nextInt(16), random.nextInt(30)));
+            for (int index = solver.nextSafeTile(); index >= 0 && field.getState() == GameState.PLAYING;
+                    index = solver.nextSafeTile()) {
+                solver.update(field.openTile(index / 30, index % 30));
+            }
+            if (field.getState() != GameState.PLAYING) {
+                continue;
+            }
+            final Solver fresh = new Solver(field);
+            for (int row = 0; row < 16; row++) {
+                for (int column = 0; column < 30; column++) {
+                    if (field.stateAt(row, column) == Tile.State.CLOSED) {
+                        assertEquals(fresh.isMine(row, column), solver.isMine(row, column));
+                        assertEquals(fresh.isSafe(row, column), solver.isSafe(row, column));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks deductions about all closed tiles.
+     *
+     * @param field field
+     * @param solver solver of the field
+     */
+    private static void checkKnowledge(Field field, Solver solver) {
+        for (int row = 0; row < field.getRowCount(); row++) {
+            for (int column = 0; column < field.getColumnCount(); column++) {
+                if (field.stateAt(row, column) == Tile.State.CLOSED) {
+                    if (solver.isMine(row, column)) {
+                        assertTrue("mine " + row + "," + column, field.isMine(row, column));
+                    }
+                    if (solver.isSafe(row, column)) {
+                        assertFalse("safe " + row + "," + column, field.isMine(row, column));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks closed tiles the solver knows to be mines.
+     *
+     * @param field field
+     * @param solver solver of the field
+     */
+    private static void markMines(Field field, Solver solver) {
+        for (int row = 0; row < field.getRowCount(); row++) {
+            for (int column = 0; column < field.getColumnCount(); column++) {
+                if (field.getState() == GameState.PLAYING && field.stateAt(row, column) == Tile.State.CLOSED
+                        && solver.isMine(row, column)) {
+                    solver.update(field.markTile(row, column));
+                }
+            }
+        }
+    }
+}